@@ -3,7 +3,9 @@ package active;
 import java.io.IOException;
 import java.util.Random;
 
+import classifier.CachedPoolScorer;
 import classifier.NaiveBayesClassifier;
+import classifier.UncertaintySampler;
 import cv.LearningCurve;
 import data.Dataset;
 import data.Instance;
@@ -16,6 +18,9 @@ public class ActiveLearningCurve {
 		Dataset dataset = new Dataset();
 		dataset.loadCSVFile(Constants.inputFile);
 		dataset.makeAlphabets();
+		// vectorize once using the alphabet of the entire dataset; the
+		// splits are views of the dataset, so they share the vectors
+		dataset.makeVectors();
 		
 		Split[] splits = dataset.split(Constants.totalFolds);
 		LearningCurve learningCurve = new LearningCurve();
@@ -30,34 +35,33 @@ public class ActiveLearningCurve {
 			// seed (should be the same for active learning and random sampling)
 			train.add(pool.popRandom(Constants.seedSize, new Random(Constants.rndSeedForSeeding)));
 			
+			// the model is updated with each new example instead of being retrained
+			NaiveBayesClassifier classifier = new NaiveBayesClassifier(dataset.getLabelAlphabet());
+			classifier.initialize(dataset.getFeatureAlphabet().size());
+			for(Instance instance : train.getInstances()) {
+				classifier.addInstance(instance);
+			}
+			// pool scores are cached and only corrected for the words of the added instances
+			CachedPoolScorer scorer = new CachedPoolScorer(classifier, pool);
+			
 			while(true) {
-				NaiveBayesClassifier classifier = new NaiveBayesClassifier(dataset.getLabelAlphabet());
-
-				// train a model
-				train.makeAlphabets();
-				train.makeVectors();
-				classifier.train(train);
-				
-				// get this model's performance on the training set
-				test.setAlphabets(train.getLabelAlphabet(), train.getFeatureAlphabet());
-				test.makeVectors();
+				// get this model's performance on the test set
 				double accuracy = classifier.test(test);
 			
 				// record the performance at this size of the training set
 				learningCurve.add(train.size(), (float)accuracy);
 
 				// was last pool instance added to train set during previous iteration?
-				if(pool.size() == 0) {
+				if(scorer.size() == 0) {
 					break; 
 				}
 				
-				// select next instance using the current model
-				pool.setAlphabets(train.getLabelAlphabet(), train.getFeatureAlphabet());
-				pool.makeVectors();
-				Instance instance = classifier.getMostUncertainInstance(pool); 
-
-				// add selected instance to the training set
-				train.add(instance);
+				// select the next batch using the current model
+				for(Instance instance : scorer.popMostUncertain(Constants.batchSize, UncertaintySampler.Measure.MARGIN)) {
+					// add selected instance to the training set and to the model
+					train.add(instance);
+					scorer.addInstance(instance);
+				}
 			}
 		}
 		
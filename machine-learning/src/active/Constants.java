@@ -11,4 +11,7 @@ public class Constants {
 	
 	public static final int rndSeedForSplitting = 0;
 	public static final int rndSeedForSeeding = 10; // 5 works; 10 works really well; 500 does not work
+	
+	// number of instances selected from the pool in each round
+	public static final int batchSize = 1;
 }
@@ -6,6 +6,7 @@ import java.util.Random;
 import classifier.NaiveBayesClassifier;
 import cv.LearningCurve;
 import data.Dataset;
+import data.Instance;
 import data.Split;
 
 public class RandomSamplingCurve {
@@ -15,6 +16,9 @@ public class RandomSamplingCurve {
 		Dataset dataset = new Dataset();
 		dataset.loadCSVFile(Constants.inputFile);
 		dataset.makeAlphabets();
+		// vectorize once using the alphabet of the entire dataset; the
+		// splits are views of the dataset, so they share the vectors
+		dataset.makeVectors();
 		
 		// splits should be the same for random sampling and active learning
 		Split[] splits = dataset.split(Constants.totalFolds);
@@ -30,17 +34,15 @@ public class RandomSamplingCurve {
 			// seed (should be the same for active learning and random sampling)
 			train.add(pool.popRandom(Constants.seedSize, new Random(Constants.rndSeedForSeeding)));
 			
+			// the model is updated with each new example instead of being retrained
+			NaiveBayesClassifier classifier = new NaiveBayesClassifier(dataset.getLabelAlphabet());
+			classifier.initialize(dataset.getFeatureAlphabet().size());
+			for(Instance instance : train.getInstances()) {
+				classifier.addInstance(instance);
+			}
+			
 			while(true) {
-				NaiveBayesClassifier classifier = new NaiveBayesClassifier(dataset.getLabelAlphabet());
-				
-				// train a model
-				train.makeAlphabets();
-				train.makeVectors();
-				classifier.train(train);
-				
 				// get the model's performance on the test set
-				test.setAlphabets(train.getLabelAlphabet(), train.getFeatureAlphabet());
-				test.makeVectors();
 				double accuracy = classifier.test(test);
 			
 				// record performance at this size of training set
@@ -51,8 +53,11 @@ public class RandomSamplingCurve {
 					break;
 				}
 				
-				// add a randoml example
-				train.add(pool.popRandom(1, new Random())); 
+				// add a batch of random examples (same batch size as active learning)
+				for(Instance instance : pool.popRandom(Math.min(Constants.batchSize, pool.size()), new Random())) {
+					train.add(instance);
+					classifier.addInstance(instance);
+				}
 			}
 		}
 		
@@ -0,0 +1,180 @@
+package classifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import utils.TopK;
+import data.Dataset;
+import data.Instance;
+import data.InvertedIndex;
+import data.SparseVector;
+
+/**
+ * Keeps the naive bayes class scores of the pool instances up to date while
+ * labeled instances are added to the model, without rescoring the pool.
+ *
+ * The unnormalized log probability of class c for a pool instance d is
+ *
+ * log p(c) + sum_w x_dw log (n_cw + 1) - L_d log (T_c + V)
+ *
+ * where x_dw is the count of word w in d, n_cw is the count of w in class c,
+ * L_d = sum_w x_dw, T_c is the total word count of c and V is the vocabulary size.
+ * The sum is cached for each pool instance and class. Adding an instance of class c
+ * changes n_cw only for the words of that instance, so only the cached sums of the
+ * pool instances that contain those words (see Dataset.getInvertedIndex()) are updated.
+ * The priors and T_c are applied when the scores are read.
+ *
+ * @author dmitriy dligach
+ */
+public class CachedPoolScorer {
+
+	private NaiveBayesClassifier classifier;
+
+	// pool instances (removed instances stay in the list)
+	private List<Instance> pool;
+	private boolean[] removed;
+	private int size;
+
+	// sum_w x_dw log10(n_cw + 1) for each pool instance and class
+	private double[][] wordScores;
+	// number of in-vocabulary word tokens in each pool instance
+	private double[] lengths;
+
+	// pool instances that contain each word and the count of the word in them
+	private InvertedIndex invertedIndex;
+
+	/**
+	 * Cache the scores of the instances in the pool. The classifier must already
+	 * be initialized (see NaiveBayesClassifier.initialize(int)) and the instances
+	 * vectorized. The pool dataset itself is not modified.
+	 */
+	public CachedPoolScorer(NaiveBayesClassifier classifier, Dataset pool) {
+
+		this.classifier = classifier;
+		this.pool = new ArrayList<Instance>(pool.getInstances());
+		removed = new boolean[this.pool.size()];
+		size = this.pool.size();
+
+		invertedIndex = pool.getInvertedIndex();
+		computeLengths();
+		computeWordScores();
+	}
+
+	/**
+	 * Count the in-vocabulary word tokens of each pool instance.
+	 */
+	private void computeLengths() {
+
+		lengths = new double[pool.size()];
+		for(int index = 0; index < pool.size(); index++) {
+			SparseVector vector = pool.get(index).getVector();
+			for(int i = 0; i < vector.size(); i++) {
+				if(vector.getIndex(i) < classifier.numWords) {
+					lengths[index] += vector.getValue(i);
+				}
+			}
+		}
+	}
+
+	private void computeWordScores() {
+
+		int numClasses = classifier.numClasses;
+		double[][] wordCounts = classifier.wordCounts;
+		wordScores = new double[pool.size()][numClasses];
+		for(int index = 0; index < pool.size(); index++) {
+			SparseVector vector = pool.get(index).getVector();
+			for(int i = 0; i < vector.size(); i++) {
+				int word = vector.getIndex(i);
+				if(word >= classifier.numWords) {
+					continue;
+				}
+				for(int label = 0; label < numClasses; label++) {
+					wordScores[index][label] += vector.getValue(i) * Math.log10(wordCounts[label][word] + 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add a labeled instance to the model and update the cached scores of
+	 * the pool instances that share words with it.
+	 */
+	public void addInstance(Instance instance) {
+
+		int label = classifier.labelAlphabet.getIndex(instance.getLabel());
+		SparseVector vector = instance.getVector();
+		double[] classWordCounts = classifier.wordCounts[label];
+
+		double[] oldLogCounts = new double[vector.size()];
+		for(int i = 0; i < vector.size(); i++) {
+			if(vector.getIndex(i) < classifier.numWords) {
+				oldLogCounts[i] = Math.log10(classWordCounts[vector.getIndex(i)] + 1);
+			}
+		}
+
+		classifier.addInstance(instance);
+
+		for(int i = 0; i < vector.size(); i++) {
+			int word = vector.getIndex(i);
+			if(word >= classifier.numWords) {
+				continue;
+			}
+			double delta = Math.log10(classWordCounts[word] + 1) - oldLogCounts[i];
+			int[] documents = invertedIndex.getRows(word);
+			float[] values = invertedIndex.getValues(word);
+			for(int j = 0; j < documents.length; j++) {
+				if(! removed[documents[j]]) {
+					wordScores[documents[j]][label] += values[j] * delta;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compute the unnormalized class log10 probabilities of a pool instance
+	 * from its cached scores.
+	 */
+	public double[] getClassLogProbs(int index) {
+
+		int numClasses = classifier.numClasses;
+		double[] logSum = new double[numClasses];
+		for(int label = 0; label < numClasses; label++) {
+			logSum[label] = Math.log10((double) classifier.labelCounts[label] / classifier.numInstances)
+					+ wordScores[index][label]
+					- lengths[index] * Math.log10(classifier.totalClassWords[label] + classifier.numWords);
+		}
+
+		return logSum;
+	}
+
+	/**
+	 * Remove the k most uncertain instances from the pool (or all of them if
+	 * the pool has fewer) and return them, most uncertain first. Ties go to
+	 * the earlier instance. The instances are not added to the model.
+	 */
+	public List<Instance> popMostUncertain(int k, UncertaintySampler.Measure measure) {
+
+		TopK topK = new TopK(Math.min(k, size));
+		for(int index = 0; index < pool.size(); index++) {
+			if(! removed[index]) {
+				topK.add(index, UncertaintySampler.uncertainty(getClassLogProbs(index), measure));
+			}
+		}
+
+		List<Instance> selected = new ArrayList<Instance>();
+		for(int index : topK.toSortedIndices()) {
+			removed[index] = true;
+			size--;
+			selected.add(pool.get(index));
+		}
+
+		return selected;
+	}
+
+	/**
+	 * Number of instances left in the pool.
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -1,7 +1,5 @@
 package classifier;
 
-import java.util.Map;
-
 import libsvm.svm;
 import libsvm.svm_model;
 import libsvm.svm_node;
@@ -10,6 +8,7 @@ import libsvm.svm_print_interface;
 import libsvm.svm_problem;
 import data.Dataset;
 import data.Instance;
+import data.SparseVector;
 
 public class LibSvmClassifier {
 
@@ -33,18 +32,7 @@ public class LibSvmClassifier {
 		int instanceCounter = 0;
 		
 		for(Instance instance : dataset.getInstances()) {
-			Map<Integer, Float> vector = instance.getVector();
-			svm_node[] nodes = new svm_node[vector.size()]; // libsvm vector representation
-			int nodeCounter = 0;
-			
-			for(int dimension : vector.keySet()) {
-				svm_node node = new svm_node(); // libsvm single dimension representation				
-				node.index = dimension;
-				node.value = instance.getDimensionValue(dimension);
-				nodes[nodeCounter++] = node;
-			}
-			
-			svmProblem.x[instanceCounter] = nodes;
+			svmProblem.x[instanceCounter] = toNodes(instance.getVector());
 			svmProblem.y[instanceCounter] = dataset.getLabelAlphabet().getIndex(instance.getLabel());
 			instanceCounter++;
 		}
@@ -86,17 +74,7 @@ public class LibSvmClassifier {
 		int correct = 0;
 		
 		for(Instance instance : dataset.getInstances()) {
-			Map<Integer, Float> vector = instance.getVector();
-			svm_node[] nodes = new svm_node[vector.size()]; // libsvm vector representation
-			int nodeCounter = 0;
-			
-			for(int dimension : vector.keySet()) {
-				svm_node node = new svm_node(); // libsvm single dimension representation				
-				node.index = dimension;
-				node.value = instance.getDimensionValue(dimension);
-				nodes[nodeCounter++] = node;
-			}
-			
+			svm_node[] nodes = toNodes(instance.getVector());
 			Double libSvmPrediction = svm.svm_predict(model, nodes); 
 			String predictedLabel = dataset.getLabelAlphabet().getString(libSvmPrediction.intValue());
 			
@@ -107,4 +85,21 @@ public class LibSvmClassifier {
 		
 		return (double) correct / dataset.size();
 	}
+	
+	/**
+	 * Convert a sparse vector to libsvm vector representation.
+	 */
+	public static svm_node[] toNodes(SparseVector vector) {
+		
+		svm_node[] nodes = new svm_node[vector.size()];
+		
+		for(int i = 0; i < vector.size(); i++) {
+			svm_node node = new svm_node(); // libsvm single dimension representation
+			node.index = vector.getIndex(i);
+			node.value = vector.getValue(i);
+			nodes[i] = node;
+		}
+		
+		return nodes;
+	}
 }
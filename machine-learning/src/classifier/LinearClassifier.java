@@ -0,0 +1,348 @@
+package classifier;
+
+import java.util.Random;
+
+import data.Dataset;
+import data.Instance;
+import data.SparseVector;
+
+/**
+ * Linear classifier trained by dual coordinate descent on the sparse vectors,
+ * as in LIBLINEAR (Hsieh et al., "A dual coordinate descent method for large-scale
+ * linear SVM", 2008; Yu et al., "Dual coordinate descent methods for logistic
+ * regression and maximum entropy models", 2011). Supports L2-regularized
+ * L2-loss and L1-loss SVMs and L2-regularized logistic regression.
+ *
+ * A constant bias feature is appended to every vector. Two classes are separated
+ * by a single weight vector; more classes are handled one-vs-rest. The weights are
+ * dense, so a prediction costs O(number of non-zero features).
+ *
+ * @author dmitriy dligach
+ */
+public class LinearClassifier {
+
+	public enum Loss {L2_SVM, L1_SVM, LOGISTIC}
+
+	// stop when the projected gradient (svm) or gradient (logistic) is this small
+	public static final double eps = 0.1;
+	public static final int maxIterations = 1000;
+	// value of the bias feature (0 for no bias)
+	public static final double bias = 1;
+	// seed for the order in which the instances are visited
+	public static final long seed = 0;
+
+	private Loss loss;
+	private double C;
+
+	// number of features excluding the bias
+	private int numFeatures;
+	private int numClasses;
+	// one weight vector for two classes (positive for class 0), otherwise one per class;
+	// the last element of each vector is the weight of the bias feature
+	public double[][] weights;
+
+	/**
+	 * L2-loss SVM with C = 1.
+	 */
+	public LinearClassifier() {
+		this(Loss.L2_SVM, 1);
+	}
+
+	public LinearClassifier(Loss loss, double C) {
+
+		this.loss = loss;
+		this.C = C;
+	}
+
+	/**
+	 * Train a model. Assumes the alphabets and the vectors were made.
+	 */
+	public void train(Dataset dataset) {
+
+		numFeatures = dataset.getNumberOfDimensions();
+		numClasses = dataset.getLabelAlphabet().size();
+
+		int size = dataset.size();
+		SparseVector[] x = new SparseVector[size];
+		int[] labels = new int[size];
+		double[] xTx = new double[size];
+		for(int i = 0; i < size; i++) {
+			Instance instance = dataset.getInstance(i);
+			x[i] = instance.getVector();
+			labels[i] = dataset.getLabelAlphabet().getIndex(instance.getLabel());
+			xTx[i] = bias * bias;
+			for(int j = 0; j < x[i].size(); j++) {
+				if(x[i].getIndex(j) < numFeatures) {
+					xTx[i] += x[i].getValue(j) * x[i].getValue(j);
+				}
+			}
+		}
+
+		weights = new double[numClasses == 2 ? 1 : numClasses][];
+		for(int positive = 0; positive < weights.length; positive++) {
+			int[] y = new int[size];
+			for(int i = 0; i < size; i++) {
+				y[i] = labels[i] == positive ? 1 : -1;
+			}
+			if(loss == Loss.LOGISTIC) {
+				weights[positive] = solveLogistic(x, y, xTx);
+			} else {
+				weights[positive] = solveSvm(x, y, xTx);
+			}
+		}
+	}
+
+	/**
+	 * Classify test set. Return accuracy.
+	 */
+	public double test(Dataset dataset) {
+
+		int correct = 0;
+
+		for(Instance instance : dataset.getInstances()) {
+			String predictedLabel = dataset.getLabelAlphabet().getString(classify(instance));
+			if(predictedLabel.equals(instance.getLabel())) {
+				correct++;
+			}
+		}
+
+		return (double) correct / dataset.size();
+	}
+
+	/**
+	 * Return the index of the predicted label.
+	 */
+	public int classify(Instance instance) {
+
+		if(weights.length == 1) {
+			return dot(weights[0], instance.getVector()) > 0 ? 0 : 1;
+		}
+
+		int prediction = 0;
+		double best = Double.NEGATIVE_INFINITY;
+		for(int label = 0; label < weights.length; label++) {
+			double score = dot(weights[label], instance.getVector());
+			if(score > best) {
+				best = score;
+				prediction = label;
+			}
+		}
+
+		return prediction;
+	}
+
+	/**
+	 * Minimize 0.5 a'Qa - e'a subject to 0 <= a_i <= U over the dual variables a,
+	 * where Q_ij = y_i y_j x_i'x_j + D_ij. For the L1-loss, U = C and D = 0; for the
+	 * L2-loss, U = infinity and D_ii = 1 / (2C). Variables that stay at a bound are
+	 * removed from the active set (shrinking) until the remaining ones converge.
+	 */
+	private double[] solveSvm(SparseVector[] x, int[] y, double[] xTx) {
+
+		int size = x.length;
+		double upper = loss == Loss.L1_SVM ? C : Double.POSITIVE_INFINITY;
+		double diagonal = loss == Loss.L1_SVM ? 0 : 0.5 / C;
+
+		double[] w = new double[numFeatures + 1];
+		double[] alpha = new double[size];
+		double[] qd = new double[size];
+		int[] index = new int[size];
+		for(int i = 0; i < size; i++) {
+			qd[i] = xTx[i] + diagonal;
+			index[i] = i;
+		}
+
+		Random random = new Random(seed);
+		int activeSize = size;
+		double projectedGradientMaxOld = Double.POSITIVE_INFINITY;
+		double projectedGradientMinOld = Double.NEGATIVE_INFINITY;
+
+		for(int iteration = 0; iteration < maxIterations; iteration++) {
+			double projectedGradientMax = Double.NEGATIVE_INFINITY;
+			double projectedGradientMin = Double.POSITIVE_INFINITY;
+			shuffle(index, activeSize, random);
+
+			for(int s = 0; s < activeSize; s++) {
+				int i = index[s];
+				double gradient = y[i] * dot(w, x[i]) - 1 + alpha[i] * diagonal;
+
+				double projectedGradient = 0;
+				if(alpha[i] == 0) {
+					if(gradient > projectedGradientMaxOld) {
+						// stays at the lower bound; shrink
+						activeSize--;
+						swap(index, s, activeSize);
+						s--;
+						continue;
+					} else if(gradient < 0) {
+						projectedGradient = gradient;
+					}
+				} else if(alpha[i] == upper) {
+					if(gradient < projectedGradientMinOld) {
+						// stays at the upper bound; shrink
+						activeSize--;
+						swap(index, s, activeSize);
+						s--;
+						continue;
+					} else if(gradient > 0) {
+						projectedGradient = gradient;
+					}
+				} else {
+					projectedGradient = gradient;
+				}
+
+				projectedGradientMax = Math.max(projectedGradientMax, projectedGradient);
+				projectedGradientMin = Math.min(projectedGradientMin, projectedGradient);
+
+				if(Math.abs(projectedGradient) > 1e-12 && qd[i] > 0) {
+					double oldAlpha = alpha[i];
+					alpha[i] = Math.min(Math.max(alpha[i] - gradient / qd[i], 0), upper);
+					add(w, x[i], (alpha[i] - oldAlpha) * y[i]);
+				}
+			}
+
+			if(projectedGradientMax - projectedGradientMin <= eps) {
+				if(activeSize == size) {
+					break;
+				}
+				// converged on the active set; check all the variables again
+				activeSize = size;
+				projectedGradientMaxOld = Double.POSITIVE_INFINITY;
+				projectedGradientMinOld = Double.NEGATIVE_INFINITY;
+				continue;
+			}
+			projectedGradientMaxOld = projectedGradientMax <= 0 ? Double.POSITIVE_INFINITY : projectedGradientMax;
+			projectedGradientMinOld = projectedGradientMin >= 0 ? Double.NEGATIVE_INFINITY : projectedGradientMin;
+		}
+
+		return w;
+	}
+
+	/**
+	 * Minimize the dual of L2-regularized logistic regression,
+	 * 0.5 a'Qa + sum_i [a_i log a_i + (C - a_i) log(C - a_i)] subject to 0 < a_i < C,
+	 * where Q_ij = y_i y_j x_i'x_j. Each coordinate is updated by a few Newton steps
+	 * on a one-variable problem; the inner tolerance is tightened as the outer
+	 * iterations need fewer Newton steps.
+	 */
+	private double[] solveLogistic(SparseVector[] x, int[] y, double[] xTx) {
+
+		int size = x.length;
+		int maxInnerIterations = 100;
+		double innerEps = 1e-2;
+		double innerEpsMin = Math.min(1e-8, eps);
+
+		// alpha[2i] is a_i and alpha[2i + 1] is C - a_i
+		double[] w = new double[numFeatures + 1];
+		double[] alpha = new double[2 * size];
+		int[] index = new int[size];
+		for(int i = 0; i < size; i++) {
+			alpha[2 * i] = Math.min(0.001 * C, 1e-8);
+			alpha[2 * i + 1] = C - alpha[2 * i];
+			add(w, x[i], y[i] * alpha[2 * i]);
+			index[i] = i;
+		}
+
+		Random random = new Random(seed);
+		for(int iteration = 0; iteration < maxIterations; iteration++) {
+			shuffle(index, size, random);
+			int newtonIterations = 0;
+			double gradientMax = 0;
+
+			for(int s = 0; s < size; s++) {
+				int i = index[s];
+				double a = xTx[i];
+				double b = y[i] * dot(w, x[i]);
+
+				// minimize over a_i or over C - a_i, whichever is farther from the bound
+				int first = 2 * i;
+				int second = 2 * i + 1;
+				int sign = 1;
+				if(0.5 * a * (alpha[second] - alpha[first]) + b < 0) {
+					first = 2 * i + 1;
+					second = 2 * i;
+					sign = -1;
+				}
+
+				double oldAlpha = alpha[first];
+				double z = oldAlpha;
+				if(C - z < 0.5 * C) {
+					z = 0.1 * z;
+				}
+				double gradient = a * (z - oldAlpha) + sign * b + Math.log(z / (C - z));
+				gradientMax = Math.max(gradientMax, Math.abs(gradient));
+
+				int innerIteration;
+				for(innerIteration = 0; innerIteration <= maxInnerIterations; innerIteration++) {
+					if(Math.abs(gradient) < innerEps) {
+						break;
+					}
+					double hessian = a + C / (C - z) / z;
+					double newZ = z - gradient / hessian;
+					// stay inside (0, C)
+					z = newZ <= 0 ? 0.1 * z : newZ;
+					gradient = a * (z - oldAlpha) + sign * b + Math.log(z / (C - z));
+					newtonIterations++;
+				}
+
+				if(innerIteration > 0) {
+					alpha[first] = z;
+					alpha[second] = C - z;
+					add(w, x[i], sign * (z - oldAlpha) * y[i]);
+				}
+			}
+
+			if(gradientMax < eps) {
+				break;
+			}
+			if(newtonIterations <= size / 10) {
+				innerEps = Math.max(innerEpsMin, 0.1 * innerEps);
+			}
+		}
+
+		return w;
+	}
+
+	/**
+	 * w'x including the bias feature. Features that were not seen in training are ignored.
+	 */
+	private double dot(double[] w, SparseVector x) {
+
+		double sum = bias * w[numFeatures];
+		for(int i = 0; i < x.size(); i++) {
+			int feature = x.getIndex(i);
+			if(feature < numFeatures) {
+				sum += w[feature] * x.getValue(i);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * w += scale * x including the bias feature.
+	 */
+	private void add(double[] w, SparseVector x, double scale) {
+
+		w[numFeatures] += scale * bias;
+		for(int i = 0; i < x.size(); i++) {
+			int feature = x.getIndex(i);
+			if(feature < numFeatures) {
+				w[feature] += scale * x.getValue(i);
+			}
+		}
+	}
+
+	private static void shuffle(int[] index, int size, Random random) {
+
+		for(int i = size - 1; i > 0; i--) {
+			swap(index, i, random.nextInt(i + 1));
+		}
+	}
+
+	private static void swap(int[] index, int i, int j) {
+
+		int temp = index[i];
+		index[i] = index[j];
+		index[j] = temp;
+	}
+}
@@ -15,6 +15,7 @@ import cc.mallet.types.FeatureVector;
 import cc.mallet.types.InstanceList;
 import data.Dataset;
 import data.Instance;
+import data.SparseVector;
 
 /**
  * This is a wrapper for the Mallet's maximum entropy classifier.
@@ -113,14 +114,13 @@ public class MalletMaxEntClassifier {
 	 */
 	public static cc.mallet.types.Instance toMalletInstance(data.Instance instance, cc.mallet.types.Alphabet malletAlphabet) {
 				
-		int[] indices = new int[instance.getVector().size()];
-		double[] values = new double[instance.getVector().size()];
-		
-		int i = 0;
-		for(int dimension : instance.getVector().keySet()) {
-			indices[i] = dimension;
-			values[i] = 1; // instance.getDimensionValue(dimension);
-			i++;
+		SparseVector vector = instance.getVector();
+		int[] indices = new int[vector.size()];
+		double[] values = new double[vector.size()];
+		
+		for(int i = 0; i < vector.size(); i++) {
+			indices[i] = vector.getIndex(i);
+			values[i] = 1; // vector.getValue(i);
 		}
 		
 		FeatureVector featureVector = new FeatureVector(malletAlphabet, indices, values);
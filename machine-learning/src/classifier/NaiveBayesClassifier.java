@@ -14,6 +14,7 @@ import com.google.common.collect.Ordering;
 import data.Alphabet;
 import data.Dataset;
 import data.Instance;
+import data.SparseVector;
 
 /**
  * Implements a multinomial naive bayes classifier.
@@ -35,12 +36,20 @@ public class NaiveBayesClassifier {
 	// number of examples for each class
 	protected int[] labelCounts;
 	// total word (feature) count in each class
-	private int[] totalClassWords;
+	protected double[] totalClassWords;
+	// classes whose counts changed since their parameters were computed
+	private boolean[] dirtyClasses;
+	// true if any class is dirty
+	private volatile boolean dirty;
 
 	// p(w|c) for all classes 
 	protected double[][] theta;
 	// p(c) for all classes
 	protected double[] priors;
+	// log10 p(w|c) for all classes (cached for classification)
+	protected double[][] logTheta;
+	// log10 p(c) for all classes (cached for classification)
+	protected double[] logPriors;
 
 	// map labels to ints and ints to labels
 	Alphabet labelAlphabet;
@@ -64,13 +73,91 @@ public class NaiveBayesClassifier {
 		numClasses = labelAlphabet.size();
 		numWords = dataset.getNumberOfDimensions();
 		numInstances = dataset.size();
+		allocate();
+	}
+	
+	/**
+	 * Start with an empty model over a fixed vocabulary, e.g. all the words in 
+	 * the feature alphabet of the entire dataset. Instances are then added one 
+	 * at a time using addInstance(). The instances must be vectorized using 
+	 * the same feature alphabet.
+	 */
+	public void initialize(int numWords) {
+		
+		numClasses = labelAlphabet.size();
+		this.numWords = numWords;
+		numInstances = 0;
+		allocate();
+	}
+	
+	private void allocate() {
 		
 		wordCounts = new double[numClasses][numWords];
 		labelCounts = new int[numClasses];
-		totalClassWords = new int[numClasses];
+		totalClassWords = new double[numClasses];
 		
 		priors = new double[numClasses];
 		theta = new double[numClasses][numWords];
+		logPriors = new double[numClasses];
+		logTheta = new double[numClasses][numWords];
+		dirtyClasses = new boolean[numClasses];
+		dirty = false;
+	}
+	
+	/**
+	 * Add the counts of a labeled instance to the model. Only the counts are
+	 * updated; the parameters are recomputed the next time they are needed 
+	 * and only for the classes whose counts changed.
+	 */
+	public void addInstance(Instance instance) {
+		
+		updateCounts(instance, 1);
+	}
+	
+	/**
+	 * Remove the counts of an instance that was added earlier.
+	 */
+	public void removeInstance(Instance instance) {
+		
+		updateCounts(instance, -1);
+	}
+	
+	private synchronized void updateCounts(Instance instance, int sign) {
+		
+		int label = labelAlphabet.getIndex(instance.getLabel());
+		SparseVector vector = instance.getVector();
+		float mass = 0;
+		for(int i = 0; i < vector.size(); i++) {
+			int index = vector.getIndex(i);
+			if(index < numWords) {
+				wordCounts[label][index] += sign * vector.getValue(i);
+				mass += vector.getValue(i);
+			}
+		}
+		totalClassWords[label] += sign * mass;
+		labelCounts[label] += sign;
+		numInstances += sign;
+		
+		dirtyClasses[label] = true;
+		dirty = true;
+	}
+	
+	/**
+	 * Recompute p(w|c) of the classes whose counts changed and all p(c).
+	 */
+	private synchronized void update() {
+		
+		if(! dirty) {
+			return;
+		}
+		for(int label = 0; label < numClasses; label++) {
+			if(dirtyClasses[label]) {
+				computeTheta(label);
+				dirtyClasses[label] = false;
+			}
+		}
+		computePriors();
+		dirty = false;
 	}
 
 	/**
@@ -154,21 +241,9 @@ public class NaiveBayesClassifier {
 	 */
 	public Instance getMostUncertainInstance(Dataset dataset) {
 
-		// key: instance index, value: uncertainty margin
-		HashMap<Integer, Double> scoredInstances = new HashMap<Integer, Double>();
-
-		for(int instanceIndex = 0; instanceIndex < dataset.size(); instanceIndex++) {
-			Double instanceScore = computeUncertainty(dataset.getInstance(instanceIndex));
-			scoredInstances.put(instanceIndex, instanceScore);
-		}
-		
-		// sort by margin size; small margin first (e.g. p(c1) = 0.49, p(c2) = 0.51)
-		List<Integer> sortedKeys = new ArrayList<Integer>(scoredInstances.keySet());
-    Function<Integer, Double> getValue = Functions.forMap(scoredInstances);
-    Collections.sort(sortedKeys, Ordering.natural().onResultOf(getValue));
-
-    // remove and return the instance with smallest margin
-    return dataset.removeInstance(sortedKeys.get(0));
+		// smallest margin first (e.g. p(c1) = 0.49, p(c2) = 0.51); ties go to the first instance
+		UncertaintySampler sampler = new UncertaintySampler(this, UncertaintySampler.Measure.MARGIN);
+		return sampler.popMostUncertain(dataset, 1).get(0);
 	}
 	
 	/**
@@ -176,11 +251,9 @@ public class NaiveBayesClassifier {
 	 * |p(most probable class) - p(second most probable class)|
 	 */
 	public Double computeUncertainty(Instance instance) {
-		// TODO: generalize to n classes
 		
 		double[] logSum = getUnnormalizedClassLogProbs(instance);
-		double[] p = logToProb(logSum[0], logSum[1]);
-		return Math.abs(p[0] - p[1]);
+		return -UncertaintySampler.uncertainty(logSum, UncertaintySampler.Measure.MARGIN);
 	}
 	
 	/**
@@ -208,30 +281,28 @@ public class NaiveBayesClassifier {
 	 * Calculations are done in log space. I.e. we need to calculate:
 	 * log(p(c)p(w_0|c)...p(w_n-1|c)) = log(p(c)) + log(p(w_0|c)) + ... + log(p(w_n-1|c))
 	 * 
+	 * Only the words that exist in this instance's vector are visited. 
 	 * OOV words (i.e. words not seen during training) are currently ignored.
-	 * 
-	 * TODO: For the inner loop, iterate over words that exist in this vector.
-	 * For some of them (OOV words), p(w|c) will be unknown (ignore them).
 	 */
 	public double[] getUnnormalizedClassLogProbs(Instance instance) {
 		
+		if(dirty) {
+			update();
+		}
 		double[] logSum = new double[numClasses];
+		SparseVector vector = instance.getVector();
 
 		for(int label = 0; label < numClasses; label++) {
-			logSum[label] = Math.log10(priors[label]);
+			logSum[label] = logPriors[label];
+			double[] classLogTheta = logTheta[label];
 
-			// iterate over words that were seen during training
-			for(int word = 0; word < numWords; word++) {
-				Float wordCount = instance.getDimensionValue(word);
-				if(wordCount == null) {
-					// this instance does not contain the current word; just go on to
-					// the next word (i.e. pretend the wordCount for this word is zero)
+			// iterate over words in this instance that were seen during training
+			for(int i = 0; i < vector.size(); i++) {
+				int word = vector.getIndex(i);
+				if(word >= numWords) {
 					continue;
 				}
-				
-				double wordProb = theta[label][word];        
-				double prob = Math.pow(wordProb, wordCount); 
-				logSum[label] += Math.log10(prob);
+				logSum[label] += vector.getValue(i) * classLogTheta[word];
 			}
 		}
 		
@@ -253,9 +324,15 @@ public class NaiveBayesClassifier {
 	public void computeTheta() {
 		
 		for(int label = 0; label < numClasses; label++) {
-			for(int word = 0; word < numWords; word++) {
-				theta[label][word] = (wordCounts[label][word] + 1) / (totalClassWords[label] + numWords);
-			}
+			computeTheta(label);
+		}
+	}
+	
+	private void computeTheta(int label) {
+		
+		for(int word = 0; word < numWords; word++) {
+			theta[label][word] = (wordCounts[label][word] + 1) / (totalClassWords[label] + numWords);
+			logTheta[label][word] = Math.log10(theta[label][word]);
 		}
 	}
 	
@@ -266,6 +343,7 @@ public class NaiveBayesClassifier {
 		
 		for(int label = 0; label < numClasses; label++) {
 			priors[label] = (double) labelCounts[label] / numInstances;
+			logPriors[label] = Math.log10(priors[label]);
 		}
 	}
 	
@@ -273,18 +351,17 @@ public class NaiveBayesClassifier {
 	 * Compute feature frequency n x m matrix, where
 	 * n: number of classes, m: number of dimensions
 	 * 
-	 * TODO: Make more efficient by changing the inner loop
-	 * to iterate over feature names (later converted to dimensions)
-	 * instead of all dimensions.
+	 * Only the non-zero entries of each instance's vector are visited.
 	 */
 	public void computeWordCounts(Dataset dataset) {
 		
 		for(Instance instance : dataset.getInstances()) {
-			for(int index = 0; index < numWords; index++) {
-				int label = labelAlphabet.getIndex(instance.getLabel());
-				Float value = instance.getDimensionValue(index); 
-				if(value != null) {
-					wordCounts[label][index] += value;
+			int label = labelAlphabet.getIndex(instance.getLabel());
+			SparseVector vector = instance.getVector();
+			for(int i = 0; i < vector.size(); i++) {
+				int index = vector.getIndex(i);
+				if(index < numWords) {
+					wordCounts[label][index] += vector.getValue(i);
 				}
 			}
 		}
@@ -302,13 +379,21 @@ public class NaiveBayesClassifier {
 	}
 	
 	/**
-	 * Compute total number of words in each class.
+	 * Compute total number of words in each class. Only 
+	 * the words that are in the vocabulary are counted.
 	 */
 	public void computeTotalClassWords(Dataset dataset) {
 
 		for(Instance instance : dataset.getInstances()) {
 			int label = labelAlphabet.getIndex(instance.getLabel());
-			totalClassWords[label] += instance.getTotalMass();
+			SparseVector vector = instance.getVector();
+			float mass = 0;
+			for(int i = 0; i < vector.size(); i++) {
+				if(vector.getIndex(i) < numWords) {
+					mass += vector.getValue(i);
+				}
+			}
+			totalClassWords[label] += mass;
 		}
 	}
 	
@@ -0,0 +1,166 @@
+package classifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import utils.LogMath;
+import utils.Parallel;
+import utils.TopK;
+import data.Dataset;
+import data.Instance;
+
+/**
+ * Uncertainty sampling for active learning with a naive bayes model.
+ * The pool is scored once per round (in parallel if an executor is given)
+ * and the k most uncertain instances are selected with a bounded heap,
+ * so a batch of k instances costs a single pass over the pool.
+ *
+ * @author dmitriy dligach
+ */
+public class UncertaintySampler {
+
+	/**
+	 * How uncertain the model is about an instance given p(c|d):
+	 * MARGIN: p(second most probable class) - p(most probable class)
+	 * LEAST_CONFIDENCE: 1 - p(most probable class)
+	 * ENTROPY: -sum_c p(c|d) log p(c|d)
+	 * For all three, larger scores mean more uncertainty.
+	 */
+	public enum Measure {MARGIN, LEAST_CONFIDENCE, ENTROPY}
+
+	// pools smaller than this are scored by a single task
+	private static final int MIN_INSTANCES_PER_TASK = 256;
+
+	private NaiveBayesClassifier classifier;
+	private Measure measure;
+	private ExecutorService executor;
+	private int numTasks;
+
+	/**
+	 * Score the pool in the calling thread.
+	 */
+	public UncertaintySampler(NaiveBayesClassifier classifier, Measure measure) {
+		this(classifier, measure, null, 1);
+	}
+
+	/**
+	 * Score the pool using up to numTasks tasks on the executor.
+	 */
+	public UncertaintySampler(NaiveBayesClassifier classifier, Measure measure, ExecutorService executor, int numTasks) {
+
+		this.classifier = classifier;
+		this.measure = measure;
+		this.executor = executor;
+		this.numTasks = numTasks;
+	}
+
+	/**
+	 * Compute the uncertainty of an instance from its unnormalized class log10 probabilities.
+	 */
+	public static double uncertainty(double[] classLogProbs, Measure measure) {
+
+		double[] p = LogMath.logToProb(classLogProbs);
+
+		switch(measure) {
+		case MARGIN:
+			double first = Double.NEGATIVE_INFINITY;
+			double second = Double.NEGATIVE_INFINITY;
+			for(int label = 0; label < p.length; label++) {
+				if(p[label] > first) {
+					second = first;
+					first = p[label];
+				} else if(p[label] > second) {
+					second = p[label];
+				}
+			}
+			// with a single class the model is never uncertain
+			return p.length < 2 ? -1 : second - first;
+		case LEAST_CONFIDENCE:
+			double max = 0;
+			for(int label = 0; label < p.length; label++) {
+				max = Math.max(max, p[label]);
+			}
+			return 1 - max;
+		case ENTROPY:
+			double entropy = 0;
+			for(int label = 0; label < p.length; label++) {
+				if(p[label] > 0) {
+					entropy -= p[label] * Math.log(p[label]);
+				}
+			}
+			return entropy;
+		default:
+			throw new IllegalArgumentException("unknown measure: " + measure);
+		}
+	}
+
+	/**
+	 * Compute the uncertainty of the current model about an instance.
+	 */
+	public double score(Instance instance) {
+		return uncertainty(classifier.getUnnormalizedClassLogProbs(instance), measure);
+	}
+
+	/**
+	 * Compute the uncertainty of the current model about each instance in the pool.
+	 */
+	public double[] score(Dataset pool) {
+
+		final List<Instance> instances = pool.getInstances();
+		final double[] scores = new double[instances.size()];
+
+		int parts = Math.min(numTasks, instances.size() / MIN_INSTANCES_PER_TASK);
+		if(executor == null || parts < 2) {
+			score(instances, 0, instances.size(), scores);
+			return scores;
+		}
+
+		final int[] boundaries = Parallel.ranges(instances.size(), parts);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for(int part = 0; part < boundaries.length - 1; part++) {
+			final int from = boundaries[part];
+			final int to = boundaries[part + 1];
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					score(instances, from, to, scores);
+					return null;
+				}
+			});
+		}
+		Parallel.invokeAll(executor, tasks);
+
+		return scores;
+	}
+
+	private void score(List<Instance> instances, int from, int to, double[] scores) {
+
+		for(int index = from; index < to; index++) {
+			scores[index] = score(instances.get(index));
+		}
+	}
+
+	/**
+	 * Find the k most uncertain instances in the pool. Return their positions
+	 * in the pool, most uncertain first. Ties go to the earlier instance.
+	 */
+	public int[] select(Dataset pool, int k) {
+
+		double[] scores = score(pool);
+		TopK topK = new TopK(Math.min(k, scores.length));
+		for(int index = 0; index < scores.length; index++) {
+			topK.add(index, scores[index]);
+		}
+
+		return topK.toSortedIndices();
+	}
+
+	/**
+	 * Remove the k most uncertain instances from the pool (or all of them if
+	 * the pool has fewer) and return them, most uncertain first.
+	 */
+	public List<Instance> popMostUncertain(Dataset pool, int k) {
+		return pool.removeInstances(select(pool, k));
+	}
+}
@@ -0,0 +1,78 @@
+package classifier.test;
+
+import java.util.List;
+import java.util.Random;
+
+import classifier.CachedPoolScorer;
+import classifier.NaiveBayesClassifier;
+import classifier.UncertaintySampler;
+import data.Dataset;
+import data.Instance;
+import data.test.SyntheticData;
+
+/**
+ * Time active learning rounds that select the most uncertain instances
+ * by rescoring the whole pool and by using cached pool scores.
+ *
+ * Arguments: [pool size [, rounds]]
+ */
+public class BenchmarkCachedPoolScorer {
+
+	public static final int LABELED = 50;
+	public static final int BATCH = 5;
+
+	public static void main(String[] args) {
+
+		int poolSize = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+		int numRounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+		String[] labels = {"a", "b", "c"};
+		Dataset dataset = SyntheticData.makeDataset(new Random(0), LABELED + poolSize, labels, 1000, 30, 3);
+		dataset.makeAlphabets();
+		dataset.makeVectors();
+
+		NaiveBayesClassifier rescored = makeClassifier(dataset);
+		Dataset pool = makePool(dataset);
+		UncertaintySampler sampler = new UncertaintySampler(rescored, UncertaintySampler.Measure.MARGIN);
+		long start = System.currentTimeMillis();
+		for(int round = 0; round < numRounds; round++) {
+			for(Instance instance : sampler.popMostUncertain(pool, BATCH)) {
+				rescored.addInstance(instance);
+			}
+		}
+		System.out.format("%-9s %6d ms\n", "rescored", System.currentTimeMillis() - start);
+
+		NaiveBayesClassifier cached = makeClassifier(dataset);
+		start = System.currentTimeMillis();
+		CachedPoolScorer scorer = new CachedPoolScorer(cached, makePool(dataset));
+		for(int round = 0; round < numRounds; round++) {
+			List<Instance> selected = scorer.popMostUncertain(BATCH, UncertaintySampler.Measure.MARGIN);
+			for(Instance instance : selected) {
+				scorer.addInstance(instance);
+			}
+		}
+		System.out.format("%-9s %6d ms\n", "cached", System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Model trained on the first LABELED instances; the rest are the pool.
+	 */
+	private static NaiveBayesClassifier makeClassifier(Dataset dataset) {
+
+		NaiveBayesClassifier classifier = new NaiveBayesClassifier(dataset.getLabelAlphabet());
+		classifier.initialize(dataset.getFeatureAlphabet().size());
+		for(int i = 0; i < LABELED; i++) {
+			classifier.addInstance(dataset.getInstance(i));
+		}
+		return classifier;
+	}
+
+	private static Dataset makePool(Dataset dataset) {
+
+		Dataset pool = new Dataset();
+		for(int i = LABELED; i < dataset.size(); i++) {
+			pool.add(dataset.getInstance(i));
+		}
+		return pool;
+	}
+}
@@ -0,0 +1,46 @@
+package classifier.test;
+
+import java.util.Random;
+
+import classifier.LibSvmClassifier;
+import classifier.LinearClassifier;
+import data.Dataset;
+
+/**
+ * Train libsvm with a linear kernel and the dual coordinate descent trainer
+ * on the same synthetic sparse data (see TestLinearClassifier.makeDataset()).
+ * Print the test accuracy and training time of each.
+ *
+ * Arguments: [number of classes [, training set size]]
+ */
+public class BenchmarkLinearClassifier {
+
+	public static void main(String[] args) {
+
+		int numClasses = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+		int size = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+
+		Random random = new Random(0);
+		Dataset trainSet = TestLinearClassifier.makeDataset(size, numClasses, random);
+		Dataset testSet = TestLinearClassifier.makeDataset(size / 4, numClasses, random);
+
+		trainSet.makeAlphabets();
+		trainSet.makeVectors();
+		testSet.setAlphabets(trainSet.getLabelAlphabet(), trainSet.getFeatureAlphabet());
+		testSet.makeVectors();
+
+		long start = System.currentTimeMillis();
+		LibSvmClassifier libSvmClassifier = new LibSvmClassifier();
+		libSvmClassifier.train(trainSet);
+		long time = System.currentTimeMillis() - start;
+		System.out.format("%-10s accuracy %.4f, %6d ms\n", "libsvm", libSvmClassifier.test(testSet), time);
+
+		for(LinearClassifier.Loss loss : LinearClassifier.Loss.values()) {
+			start = System.currentTimeMillis();
+			LinearClassifier linearClassifier = new LinearClassifier(loss, 1);
+			linearClassifier.train(trainSet);
+			time = System.currentTimeMillis() - start;
+			System.out.format("%-10s accuracy %.4f, %6d ms\n", loss, linearClassifier.test(testSet), time);
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package classifier.test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import classifier.CachedPoolScorer;
+import classifier.NaiveBayesClassifier;
+import classifier.UncertaintySampler;
+import data.Dataset;
+import data.Instance;
+import data.test.SyntheticData;
+
+/**
+ * Run active learning twice in lockstep: rescoring the pool in every round
+ * and using cached pool scores. Check that both select the same instances
+ * and that the cached scores agree with the model.
+ * See BenchmarkCachedPoolScorer for the times.
+ */
+public class TestCachedPoolScorer {
+
+	public static void main(String[] args) {
+
+		String[] labels = {"a", "b", "c"};
+		Dataset dataset = SyntheticData.makeDataset(new Random(0), 3000, labels, 1000, 30, 3);
+		dataset.makeAlphabets();
+		dataset.makeVectors();
+
+		NaiveBayesClassifier rescored = new NaiveBayesClassifier(dataset.getLabelAlphabet());
+		NaiveBayesClassifier cached = new NaiveBayesClassifier(dataset.getLabelAlphabet());
+		rescored.initialize(dataset.getFeatureAlphabet().size());
+		cached.initialize(dataset.getFeatureAlphabet().size());
+		Dataset pool = new Dataset();
+		for(int i = 0; i < dataset.size(); i++) {
+			if(i < 50) {
+				rescored.addInstance(dataset.getInstance(i));
+				cached.addInstance(dataset.getInstance(i));
+			} else {
+				pool.add(dataset.getInstance(i));
+			}
+		}
+
+		UncertaintySampler sampler = new UncertaintySampler(rescored, UncertaintySampler.Measure.MARGIN);
+		CachedPoolScorer scorer = new CachedPoolScorer(cached, pool);
+
+		int mismatches = 0;
+		for(int round = 0; round < 200; round++) {
+			List<Instance> expected = sampler.popMostUncertain(pool, 5);
+			for(Instance instance : expected) {
+				rescored.addInstance(instance);
+			}
+
+			List<Instance> selected = scorer.popMostUncertain(5, UncertaintySampler.Measure.MARGIN);
+			for(Instance instance : selected) {
+				scorer.addInstance(instance);
+			}
+
+			if(! expected.equals(selected)) {
+				mismatches++;
+			}
+		}
+
+		// the cached scores of the remaining pool agree with the model
+		Set<Instance> remaining = new HashSet<Instance>(pool.getInstances());
+		double maxDifference = 0;
+		for(int index = 50; index < dataset.size(); index++) {
+			if(! remaining.contains(dataset.getInstance(index))) {
+				continue;
+			}
+			double[] p1 = cached.getUnnormalizedClassLogProbs(dataset.getInstance(index));
+			double[] p2 = scorer.getClassLogProbs(index - 50);
+			for(int label = 0; label < p1.length; label++) {
+				maxDifference = Math.max(maxDifference, Math.abs(p1[label] - p2[label]));
+			}
+		}
+
+		System.out.format("max difference: %g, mismatched rounds: %d\n", maxDifference, mismatches);
+		System.out.println(maxDifference < 1e-9 && mismatches == 0 ? "passed" : "failed");
+	}
+}
@@ -1,6 +1,6 @@
 package classifier.test;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 
 import classifier.NaiveBayesClassifier;
 import data.Dataset;
@@ -9,7 +9,7 @@ import data.Split;
 
 public class TestI2b2Format {
 	
-	public static void main(String[] args) throws FileNotFoundException {
+	public static void main(String[] args) throws IOException {
 		
 		final int N = 5; // number of folds
 
@@ -0,0 +1,79 @@
+package classifier.test;
+
+import java.util.Random;
+
+import classifier.LibSvmClassifier;
+import classifier.LinearClassifier;
+import data.Dataset;
+import data.Instance;
+
+/**
+ * Train libsvm with a linear kernel and the dual coordinate descent trainer
+ * with each loss on the same split of synthetic sparse data, for two and
+ * three classes. For two classes, the L1-loss svm solves the same problem as
+ * libsvm, so its test accuracy must be within TOLERANCE of libsvm's. The other
+ * losses and the one-vs-rest models (libsvm uses one-vs-one) may differ, but must
+ * not be worse than libsvm by more than TOLERANCE.
+ * See BenchmarkLinearClassifier for the training times.
+ */
+public class TestLinearClassifier {
+
+	public static final double TOLERANCE = 0.02;
+
+	public static void main(String[] args) {
+
+		boolean passed = true;
+		for(int numClasses = 2; numClasses <= 3; numClasses++) {
+			Random random = new Random(0);
+			Dataset trainSet = makeDataset(1500, numClasses, random);
+			Dataset testSet = makeDataset(750, numClasses, random);
+			trainSet.makeAlphabets();
+			trainSet.makeVectors();
+			testSet.setAlphabets(trainSet.getLabelAlphabet(), trainSet.getFeatureAlphabet());
+			testSet.makeVectors();
+
+			LibSvmClassifier libSvmClassifier = new LibSvmClassifier();
+			libSvmClassifier.train(trainSet);
+			double expected = libSvmClassifier.test(testSet);
+			System.out.format("%d classes, %-10s accuracy %.4f\n", numClasses, "libsvm", expected);
+
+			for(LinearClassifier.Loss loss : LinearClassifier.Loss.values()) {
+				LinearClassifier linearClassifier = new LinearClassifier(loss, 1);
+				linearClassifier.train(trainSet);
+				double accuracy = linearClassifier.test(testSet);
+				System.out.format("%d classes, %-10s accuracy %.4f\n", numClasses, loss, accuracy);
+				if(numClasses == 2 && loss == LinearClassifier.Loss.L1_SVM) {
+					passed = passed && Math.abs(accuracy - expected) <= TOLERANCE;
+				} else {
+					passed = passed && accuracy >= expected - TOLERANCE;
+				}
+			}
+		}
+
+		System.out.println(passed ? "passed" : "failed");
+	}
+
+	/**
+	 * Instances with 40 features from a vocabulary of 5000. A quarter of the
+	 * features of each instance come from the slice of the vocabulary of its class.
+	 */
+	public static Dataset makeDataset(int size, int numClasses, Random random) {
+
+		int vocabulary = 5000;
+		Dataset dataset = new Dataset();
+		for(int i = 0; i < size; i++) {
+			int label = random.nextInt(numClasses);
+			Instance instance = new Instance();
+			instance.setLabel("c" + label);
+			for(int j = 0; j < 40; j++) {
+				int feature = random.nextInt(vocabulary);
+				if(random.nextInt(4) == 0) {
+					feature = feature - feature % numClasses + label;
+				}
+				instance.addFeature("w" + feature, 1);
+			}
+			dataset.add(instance);
+		}
+		return dataset;
+	}
+}
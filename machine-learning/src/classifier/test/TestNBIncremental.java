@@ -0,0 +1,57 @@
+package classifier.test;
+
+import java.util.Random;
+
+import classifier.NaiveBayesClassifier;
+import data.Dataset;
+import data.Instance;
+import data.test.SyntheticData;
+
+/**
+ * Check that a model built with addInstance() and removeInstance() makes
+ * the same predictions as a model trained from scratch on the same instances.
+ */
+public class TestNBIncremental {
+
+	public static void main(String[] args) {
+
+		String[] labels = {"yes", "no"};
+		Dataset dataset = SyntheticData.makeDataset(new Random(0), 500, labels, 300, 20, 3);
+		dataset.makeAlphabets();
+		dataset.makeVectors();
+
+		// add the first 300 instances, then remove the first 100
+		NaiveBayesClassifier incremental = new NaiveBayesClassifier(dataset.getLabelAlphabet());
+		incremental.initialize(dataset.getFeatureAlphabet().size());
+		for(int i = 0; i < 300; i++) {
+			incremental.addInstance(dataset.getInstance(i));
+		}
+		for(int i = 0; i < 100; i++) {
+			incremental.removeInstance(dataset.getInstance(i));
+		}
+
+		Dataset train = new Dataset();
+		for(int i = 100; i < 300; i++) {
+			train.add(dataset.getInstance(i));
+		}
+		train.setAlphabets(dataset.getLabelAlphabet(), dataset.getFeatureAlphabet());
+		NaiveBayesClassifier batch = new NaiveBayesClassifier(dataset.getLabelAlphabet());
+		batch.train(train);
+
+		double maxDifference = 0;
+		int disagreements = 0;
+		for(Instance instance : dataset.getInstances()) {
+			double[] p1 = incremental.getUnnormalizedClassLogProbs(instance);
+			double[] p2 = batch.getUnnormalizedClassLogProbs(instance);
+			for(int label = 0; label < p1.length; label++) {
+				maxDifference = Math.max(maxDifference, Math.abs(p1[label] - p2[label]));
+			}
+			if(incremental.classify(instance) != batch.classify(instance)) {
+				disagreements++;
+			}
+		}
+
+		System.out.format("max difference: %g, disagreements: %d\n", maxDifference, disagreements);
+		System.out.println(maxDifference < 1e-9 && disagreements == 0 ? "passed" : "failed");
+	}
+}
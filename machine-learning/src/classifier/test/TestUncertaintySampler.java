@@ -0,0 +1,78 @@
+package classifier.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import utils.Parallel;
+import classifier.NaiveBayesClassifier;
+import classifier.UncertaintySampler;
+import data.Dataset;
+import data.Instance;
+import data.test.SyntheticData;
+
+/**
+ * Check that the top-k selection of UncertaintySampler agrees with sorting
+ * all the pool scores, for each measure, with and without an executor.
+ */
+public class TestUncertaintySampler {
+
+	public static void main(String[] args) {
+
+		String[] labels = {"a", "b", "c"};
+		Dataset dataset = SyntheticData.makeDataset(new Random(0), 2000, labels, 200, 10, 2);
+		dataset.makeAlphabets();
+		dataset.makeVectors();
+
+		NaiveBayesClassifier classifier = new NaiveBayesClassifier(dataset.getLabelAlphabet());
+		classifier.initialize(dataset.getFeatureAlphabet().size());
+		for(int i = 0; i < 100; i++) {
+			classifier.addInstance(dataset.getInstance(i));
+		}
+		Dataset pool = new Dataset();
+		for(int i = 100; i < dataset.size(); i++) {
+			pool.add(dataset.getInstance(i));
+		}
+
+		ExecutorService executor = Parallel.newPool(4);
+		boolean passed = true;
+		for(UncertaintySampler.Measure measure : UncertaintySampler.Measure.values()) {
+			UncertaintySampler serial = new UncertaintySampler(classifier, measure);
+			UncertaintySampler parallel = new UncertaintySampler(classifier, measure, executor, 4);
+
+			final double[] scores = serial.score(pool);
+			List<Integer> expected = new ArrayList<Integer>();
+			for(int index = 0; index < scores.length; index++) {
+				expected.add(index);
+			}
+			Collections.sort(expected, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					int result = Double.compare(scores[b], scores[a]);
+					return result != 0 ? result : a.compareTo(b);
+				}
+			});
+
+			for(int k : new int[] {1, 50, pool.size() + 1}) {
+				int[] selected = parallel.select(pool, k);
+				boolean same = selected.length == Math.min(k, pool.size());
+				for(int i = 0; same && i < selected.length; i++) {
+					same = selected[i] == expected.get(i);
+				}
+				System.out.format("%-16s k=%-5d %s\n", measure, k, same ? "ok" : "mismatch");
+				passed = passed && same;
+			}
+		}
+		executor.shutdown();
+
+		// removing a batch keeps the remaining instances in order
+		Instance first = pool.getInstance(0);
+		Instance last = pool.getInstance(pool.size() - 1);
+		List<Instance> batch = pool.removeInstances(new int[] {pool.size() - 1, 5, 0});
+		passed = passed && batch.get(0) == last && batch.get(2) == first && pool.size() == 1897;
+
+		System.out.println(passed ? "passed" : "failed");
+	}
+}
@@ -0,0 +1,84 @@
+package cv;
+
+import org.apache.commons.math3.stat.StatUtils;
+
+/**
+ * Per-fold performance returned by FoldRunner.
+ * Folds that failed are excluded from the aggregated values.
+ */
+public class FoldResults {
+
+	// performance of each fold (NaN if the fold failed)
+	private double[] metrics;
+	// exception thrown by each fold (null if the fold succeeded)
+	private Throwable[] failures;
+
+	public FoldResults(double[] metrics, Throwable[] failures) {
+		this.metrics = metrics;
+		this.failures = failures;
+	}
+
+	public int getNumberOfFolds() {
+		return metrics.length;
+	}
+
+	public int getNumberOfFailedFolds() {
+
+		int failed = 0;
+		for(Throwable failure : failures) {
+			if(failure != null) {
+				failed++;
+			}
+		}
+
+		return failed;
+	}
+
+	public boolean failed(int fold) {
+		return failures[fold] != null;
+	}
+
+	public Throwable getFailure(int fold) {
+		return failures[fold];
+	}
+
+	public double getMetric(int fold) {
+		return metrics[fold];
+	}
+
+	/**
+	 * Performance of the folds that succeeded in the order of the folds.
+	 */
+	public double[] getMetrics() {
+
+		double[] succeeded = new double[metrics.length - getNumberOfFailedFolds()];
+		int next = 0;
+		for(int fold = 0; fold < metrics.length; fold++) {
+			if(failures[fold] == null) {
+				succeeded[next++] = metrics[fold];
+			}
+		}
+
+		return succeeded;
+	}
+
+	/**
+	 * Mean performance over the folds that succeeded (NaN if all failed).
+	 */
+	public double getMean() {
+		return StatUtils.mean(getMetrics());
+	}
+
+	/**
+	 * Standard error of the mean: sample standard deviation / sqrt(number of folds).
+	 */
+	public double getStandardError() {
+
+		double[] succeeded = getMetrics();
+		return Math.sqrt(StatUtils.variance(succeeded)) / Math.sqrt(succeeded.length);
+	}
+
+	public double getVariance() {
+		return StatUtils.variance(getMetrics());
+	}
+}
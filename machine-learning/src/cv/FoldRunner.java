@@ -0,0 +1,101 @@
+package cv;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import utils.Parallel;
+
+/**
+ * Run the folds of n-fold cross-validation concurrently on a bounded
+ * thread pool. Each fold gets its own source of randomness whose seed
+ * depends only on the base seed and the fold number, so the results do
+ * not depend on the number of threads or on the order in which the folds
+ * finish. A fold that throws an exception is reported and left out of the
+ * results; the other folds are not affected.
+ *
+ * Folds run at the same time, so a task must not modify data shared with
+ * other folds (e.g. use views or shallow copies of a shared dataset).
+ */
+public class FoldRunner {
+
+	/**
+	 * Train and evaluate on one fold. Return the fold's performance.
+	 */
+	public interface FoldTask {
+		public double run(int fold, Random random) throws Exception;
+	}
+
+	private int threads;
+	private long seed;
+
+	/**
+	 * Run at most threads folds at a time. With one thread the folds
+	 * run one after another in the calling thread.
+	 */
+	public FoldRunner(int threads, long seed) {
+		this.threads = threads;
+		this.seed = seed;
+	}
+
+	/**
+	 * Run the task on folds 0 to numFolds - 1 and wait for all of them to finish.
+	 */
+	public FoldResults run(int numFolds, final FoldTask task) {
+
+		final double[] metrics = new double[numFolds];
+		final Throwable[] failures = new Throwable[numFolds];
+
+		if(threads <= 1 || numFolds <= 1) {
+			for(int fold = 0; fold < numFolds; fold++) {
+				runFold(task, fold, metrics, failures);
+			}
+			return new FoldResults(metrics, failures);
+		}
+
+		ExecutorService executor = Parallel.newPool(Math.min(threads, numFolds));
+		try {
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			for(int fold = 0; fold < numFolds; fold++) {
+				final int currentFold = fold;
+				tasks.add(new Callable<Void>() {
+					public Void call() {
+						runFold(task, currentFold, metrics, failures);
+						return null;
+					}
+				});
+			}
+			Parallel.invokeAll(executor, tasks);
+		} finally {
+			executor.shutdown();
+		}
+
+		return new FoldResults(metrics, failures);
+	}
+
+	/**
+	 * Seed of a fold's source of randomness.
+	 */
+	public static long foldSeed(long seed, int fold) {
+
+		// mix the bits so that the seeds of neighboring folds are not similar
+		long hash = seed + 0x9e3779b97f4a7c15L * (fold + 1);
+		hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+		return hash ^ (hash >>> 31);
+	}
+
+	private void runFold(FoldTask task, int fold, double[] metrics, Throwable[] failures) {
+
+		try {
+			metrics[fold] = task.run(fold, new Random(foldSeed(seed, fold)));
+		} catch (Exception e) {
+			System.err.println("fold " + fold + " failed: " + e);
+			e.printStackTrace();
+			metrics[fold] = Double.NaN;
+			failures[fold] = e;
+		}
+	}
+}
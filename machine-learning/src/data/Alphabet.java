@@ -47,6 +47,14 @@ public class Alphabet {
 		return str2int.get(str); 
 	}
 	
+	/**
+	 * Index of a string or -1 if the string is not in the alphabet.
+	 */
+	public int indexOf(String str) {
+		Integer index = str2int.get(str);
+		return index == null ? -1 : index;
+	}
+	
 	public String getString(int index) {
 		return int2str.get(index);
 	}
@@ -0,0 +1,151 @@
+package data;
+
+import java.util.Arrays;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Map UTF-8 encoded strings to their indexes in an alphabet straight from
+ * bytes. A string is made only the first time a byte sequence is seen, so
+ * each distinct string exists once no matter how many times it is read.
+ * Strings must be added to the alphabet through this object only.
+ */
+public class ByteInterner {
+
+	private static final int initialCapacity = 1024;
+	// a slot of the hash table: hash, alphabet index + 1 (0 if empty), key offset, key length
+	private static final int slotSize = 4;
+
+	private Alphabet alphabet;
+	// strings by alphabet index
+	private String[] strings;
+	// open addressing hash table; all the fields of a slot are next to each other in memory
+	private int[] table;
+	// bytes of all keys one after another
+	private byte[] pool;
+	private int poolSize;
+	private int count;
+
+	public ByteInterner() {
+		this(new Alphabet());
+	}
+
+	/**
+	 * Intern into an existing alphabet; its strings are indexed first.
+	 */
+	public ByteInterner(Alphabet alphabet) {
+		this.alphabet = alphabet;
+		strings = new String[initialCapacity];
+		table = new int[slotSize * initialCapacity];
+		pool = new byte[16 * initialCapacity];
+		for(String string : alphabet.getStrings()) {
+			byte[] bytes = string.getBytes(Charsets.UTF_8);
+			put(bytes, 0, bytes.length, hash(bytes, 0, bytes.length), alphabet.getIndex(string), string);
+		}
+	}
+
+	/**
+	 * Index of the string in bytes [from, to). Add the string if it is new.
+	 */
+	public int intern(byte[] bytes, int from, int to) {
+		int hash = hash(bytes, from, to);
+		int mask = table.length / slotSize - 1;
+		for(int slot = hash & mask; ; slot = (slot + 1) & mask) {
+			int position = slot * slotSize;
+			if(table[position + 1] == 0) {
+				break;
+			}
+			if(table[position] == hash && equals(table[position + 2], table[position + 3], bytes, from, to)) {
+				return table[position + 1] - 1;
+			}
+		}
+
+		String string = new String(bytes, from, to - from, Charsets.UTF_8);
+		alphabet.add(string);
+		int index = alphabet.getIndex(string);
+		put(bytes, from, to, hash, index, string);
+		return index;
+	}
+
+	public String getString(int index) {
+		return strings[index];
+	}
+
+	public Alphabet getAlphabet() {
+		return alphabet;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	private void put(byte[] bytes, int from, int to, int hash, int index, String string) {
+		if(2 * (count + 1) > table.length / slotSize) {
+			rehash();
+		}
+
+		int length = to - from;
+		if(poolSize + length > pool.length) {
+			pool = Arrays.copyOf(pool, Math.max(poolSize + length, 2 * pool.length));
+		}
+		System.arraycopy(bytes, from, pool, poolSize, length);
+
+		int position = findEmptySlot(table, hash);
+		table[position] = hash;
+		table[position + 1] = index + 1;
+		table[position + 2] = poolSize;
+		table[position + 3] = length;
+		poolSize += length;
+		count++;
+
+		if(index >= strings.length) {
+			strings = Arrays.copyOf(strings, Math.max(index + 1, 2 * strings.length));
+		}
+		strings[index] = string;
+	}
+
+	private void rehash() {
+		int[] oldTable = table;
+		table = new int[2 * oldTable.length];
+		for(int position = 0; position < oldTable.length; position += slotSize) {
+			if(oldTable[position + 1] != 0) {
+				System.arraycopy(oldTable, position, table, findEmptySlot(table, oldTable[position]), slotSize);
+			}
+		}
+	}
+
+	private static int findEmptySlot(int[] table, int hash) {
+		int mask = table.length / slotSize - 1;
+		int slot = hash & mask;
+		while(table[slot * slotSize + 1] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		return slot * slotSize;
+	}
+
+	private static int hash(byte[] bytes, int from, int to) {
+		int hash = 0;
+		for(int i = from; i < to; i++) {
+			hash = 31 * hash + bytes[i];
+		}
+		// similar strings (e.g. C0001, C0002) have similar hashes; mix the bits
+		// so that they do not end up in adjacent slots of the table
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		return hash ^ (hash >>> 16);
+	}
+
+	private boolean equals(int offset, int length, byte[] bytes, int from, int to) {
+		if(length != to - from) {
+			return false;
+		}
+		for(int i = 0; i < length; i++) {
+			if(pool[offset + i] != bytes[from + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
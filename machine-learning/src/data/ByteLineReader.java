@@ -0,0 +1,307 @@
+package data;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Read a file line by line as bytes (no strings are made unless asked for)
+ * and split the current line into tokens. Lines end with \n or \r\n.
+ * Each token method consumes the current line up to the next occurrence
+ * of a delimiter (or the end of the line) and skips the delimiter:
+ *
+ * while(reader.nextLine()) {
+ *   String label = reader.nextString((byte) ',');
+ *   while(reader.hasNext()) {
+ *     int feature = reader.nextIndex((byte) ':', interner);
+ *     float value = reader.nextFloat((byte) ',');
+ *   }
+ * }
+ */
+public class ByteLineReader {
+
+	private static final int defaultBufferSize = 1 << 16;
+	// powers of ten that are exactly representable as doubles
+	private static final double[] powersOfTen = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+	// significant digits that fit in a double without rounding
+	private static final int maxDigits = 15;
+
+	private FileInputStream stream;
+	private FileChannel channel;
+	private byte[] buffer;
+	private ByteBuffer byteBuffer;
+	// number of bytes in the buffer
+	private int limit;
+	// start of the next line
+	private int next;
+	// bytes in [next, scanned) are known not to contain \n
+	private int scanned;
+	private boolean endOfFile;
+	// unread part of the current line is [position, end)
+	private int position;
+	private int end;
+	// number of bytes read so far
+	private long bytesRead;
+
+	public ByteLineReader(String inputFile) throws FileNotFoundException {
+		stream = new FileInputStream(inputFile);
+		channel = stream.getChannel();
+		buffer = new byte[defaultBufferSize];
+		byteBuffer = ByteBuffer.wrap(buffer);
+	}
+
+	/**
+	 * Move to the next line. Return false if there are no more lines.
+	 */
+	public boolean nextLine() throws IOException {
+		while(true) {
+			for(int i = scanned; i < limit; i++) {
+				if(buffer[i] == '\n') {
+					setLine(next, i);
+					next = scanned = i + 1;
+					return true;
+				}
+			}
+			scanned = limit;
+
+			if(endOfFile) {
+				if(next < limit) {
+					// last line has no line break
+					setLine(next, limit);
+					next = scanned = limit;
+					return true;
+				}
+				return false;
+			}
+			fill();
+		}
+	}
+
+	/**
+	 * True if the current line has unread tokens.
+	 */
+	public boolean hasNext() {
+		return position < end;
+	}
+
+	/**
+	 * True if the rest of the current line is empty.
+	 */
+	public boolean isEmpty() {
+		return position >= end;
+	}
+
+	/**
+	 * True if the rest of the current line starts with an ascii prefix.
+	 */
+	public boolean startsWith(String prefix) {
+		if(end - position < prefix.length()) {
+			return false;
+		}
+		for(int i = 0; i < prefix.length(); i++) {
+			if(buffer[position + i] != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Next token as a string.
+	 */
+	public String nextString(byte delimiter) {
+		int stop = find(delimiter);
+		String token = new String(buffer, position, stop - position, Charsets.UTF_8);
+		position = stop + 1;
+		return token;
+	}
+
+	/**
+	 * Index of the next token in the interner's alphabet.
+	 * No string is made if the token was seen before.
+	 */
+	public int nextIndex(byte delimiter, ByteInterner interner) {
+		int stop = find(delimiter);
+		int index = interner.intern(buffer, position, stop);
+		position = stop + 1;
+		return index;
+	}
+
+	/**
+	 * Next token parsed as a float. Same result as Float.parseFloat().
+	 */
+	public float nextFloat(byte delimiter) {
+		int stop = find(delimiter);
+		float value = parseFloat(buffer, position, stop);
+		position = stop + 1;
+		return value;
+	}
+
+	/**
+	 * Skip the next token.
+	 */
+	public void skip(byte delimiter) {
+		position = find(delimiter) + 1;
+	}
+
+	/**
+	 * Remove the last token from the current line and return it.
+	 * The token methods above will then stop before its delimiter.
+	 */
+	public String removeLastToken(byte delimiter) {
+		int start = end - 1;
+		while(start >= position && buffer[start] != delimiter) {
+			start--;
+		}
+		String token = new String(buffer, start + 1, end - start - 1, Charsets.UTF_8);
+		end = Math.max(start, position);
+		return token;
+	}
+
+	/**
+	 * Number of bytes read from the file so far.
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	public void close() throws IOException {
+		stream.close();
+	}
+
+	/**
+	 * Parse a float without making a string. Numbers with up to 15 significant
+	 * digits and small exponents are converted using a single correctly rounded
+	 * double operation; the double is then rounded to a float unless it lies
+	 * exactly halfway between two floats (where rounding twice could be wrong).
+	 * Everything else is handed to Float.parseFloat().
+	 */
+	public static float parseFloat(byte[] bytes, int from, int to) {
+		int i = from;
+		boolean negative = false;
+		if(i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+			negative = bytes[i] == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean hasDigits = false;
+		for(; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+			mantissa = mantissa * 10 + (bytes[i] - '0');
+			digits += (mantissa != 0 ? 1 : 0);
+			hasDigits = true;
+		}
+		if(i < to && bytes[i] == '.') {
+			for(i++; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+				mantissa = mantissa * 10 + (bytes[i] - '0');
+				digits += (mantissa != 0 ? 1 : 0);
+				exponent--;
+				hasDigits = true;
+			}
+		}
+		if(hasDigits && i < to && (bytes[i] == 'e' || bytes[i] == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if(i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+				negativeExponent = bytes[i] == '-';
+				i++;
+			}
+			int explicitExponent = 0;
+			int exponentDigits = 0;
+			for(; i < to && bytes[i] >= '0' && bytes[i] <= '9' && exponentDigits < 4; i++, exponentDigits++) {
+				explicitExponent = explicitExponent * 10 + (bytes[i] - '0');
+			}
+			if(exponentDigits == 0) {
+				hasDigits = false;
+			}
+			exponent += (negativeExponent ? -explicitExponent : explicitExponent);
+		}
+		if(! hasDigits || i != to || digits > maxDigits) {
+			return parseFloatSlowly(bytes, from, to);
+		}
+
+		double value;
+		if(mantissa == 0) {
+			value = 0;
+		} else if(exponent == 0) {
+			value = mantissa;
+		} else if(exponent > 0 && exponent < powersOfTen.length) {
+			value = mantissa * powersOfTen[exponent];
+		} else if(exponent < 0 && -exponent < powersOfTen.length) {
+			value = mantissa / powersOfTen[-exponent];
+		} else {
+			return parseFloatSlowly(bytes, from, to);
+		}
+
+		if(value != 0) {
+			if(value < Float.MIN_NORMAL || value > Float.MAX_VALUE) {
+				return parseFloatSlowly(bytes, from, to);
+			}
+			// the 29 low bits of the mantissa are the ones dropped by the float conversion
+			if((Double.doubleToRawLongBits(value) & 0x1fffffffL) == 0x10000000L) {
+				return parseFloatSlowly(bytes, from, to);
+			}
+		}
+
+		return (float) (negative ? -value : value);
+	}
+
+	private static float parseFloatSlowly(byte[] bytes, int from, int to) {
+		return Float.parseFloat(new String(bytes, from, to - from, Charsets.UTF_8));
+	}
+
+	/**
+	 * Position of the next delimiter in the current line or the end of the line.
+	 */
+	private int find(byte delimiter) {
+		int i = position;
+		while(i < end && buffer[i] != delimiter) {
+			i++;
+		}
+		return i;
+	}
+
+	private void setLine(int from, int to) {
+		if(to > from && buffer[to - 1] == '\r') {
+			to--;
+		}
+		position = from;
+		end = to;
+	}
+
+	/**
+	 * Read more bytes. The unfinished line is moved to the beginning
+	 * of the buffer and the buffer grows if the line does not fit.
+	 */
+	private void fill() throws IOException {
+		if(next > 0) {
+			System.arraycopy(buffer, next, buffer, 0, limit - next);
+			limit -= next;
+			scanned -= next;
+			next = 0;
+		}
+		if(limit == buffer.length) {
+			buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+			byteBuffer = ByteBuffer.wrap(buffer);
+		}
+
+		byteBuffer.limit(buffer.length);
+		byteBuffer.position(limit);
+		int count = channel.read(byteBuffer);
+		if(count < 0) {
+			endOfFile = true;
+		} else {
+			limit += count;
+			bytesRead += count;
+		}
+	}
+}
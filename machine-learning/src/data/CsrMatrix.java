@@ -0,0 +1,362 @@
+package data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Sparse matrix in compressed sparse row (CSR) format that holds the vectors
+ * of an i2b2 phenotype file: one row per patient_num (in the order in which
+ * the patients first appear in the file) and one column per feature name.
+ * Column names and patient_nums are stored once and shared by all rows.
+ *
+ * The matrix can be saved to a binary file which is memory-mapped when read.
+ * load() reads the binary file that sits next to a csv file if it is fresher
+ * than the csv file; otherwise it parses the csv file and (re)writes the
+ * binary file so that the next load is fast.
+ *
+ * Binary format (big endian): magic, number of columns, number of rows,
+ * number of non-zero values, column names, patient_nums, row pointers,
+ * column indices, values. Strings are stored as length and UTF-8 bytes.
+ */
+public class CsrMatrix {
+
+	public static final String extension = ".csr";
+	private static final int magic = 0x43535231; // "CSR1"
+
+	// feature names
+	private String[] columns;
+	// patient_num of each row
+	private String[] rowIds;
+	// non-zero values of row i are at positions [rowPointers[i], rowPointers[i + 1])
+	private int[] rowPointers;
+	// column of each non-zero value
+	private int[] columnIndices;
+	// non-zero values
+	private float[] values;
+
+	public CsrMatrix(String[] columns, String[] rowIds, int[] rowPointers, int[] columnIndices, float[] values) {
+		this.columns = columns;
+		this.rowIds = rowIds;
+		this.rowPointers = rowPointers;
+		this.columnIndices = columnIndices;
+		this.values = values;
+	}
+
+	/**
+	 * Load the matrix for an i2b2 csv file. Use the binary cache file
+	 * if it is fresher than the csv file. Otherwise parse the csv file
+	 * and try to write the cache file (failing to write it is not an error).
+	 */
+	public static CsrMatrix load(String csvFile) throws IOException {
+
+		File csv = new File(csvFile);
+		File cache = new File(csvFile + extension);
+		if(cache.exists() && cache.lastModified() >= csv.lastModified()) {
+			try {
+				return read(cache.getPath());
+			} catch (IOException e) {
+				System.err.println("couldn't read cache file: " + cache);
+			}
+		}
+
+		CsrMatrix matrix = fromI2b2CSV(csvFile);
+		try {
+			matrix.write(cache.getPath());
+		} catch (IOException e) {
+			System.err.println("couldn't write cache file: " + cache);
+		}
+
+		return matrix;
+	}
+
+	/**
+	 * Parse a file in i2b2 phenotype format. Each patient_num is read only once.
+	 */
+	public static CsrMatrix fromI2b2CSV(String csvFile) throws IOException {
+
+		// column names are interned, so the column index is the alphabet index
+		ByteInterner columnNames = new ByteInterner();
+		List<String> patientNums = new ArrayList<String>();
+		Set<String> patientNumsProcessed = new HashSet<String>();
+		IntList pointers = new IntList();
+		IntList indices = new IntList();
+		FloatList nonZeroValues = new FloatList();
+		pointers.add(0);
+
+		ByteLineReader reader = new ByteLineReader(csvFile);
+		IntList lineColumns = null;
+
+		try {
+			while(reader.nextLine()) {
+				// skip comments and empty lines
+				if(reader.startsWith("#") || reader.isEmpty()) {
+					continue;
+				}
+
+				// map the column names to column indices
+				if(reader.startsWith("patient_num")) {
+					lineColumns = new IntList();
+					reader.skip((byte) '|');
+					while(reader.hasNext()) {
+						lineColumns.add(reader.nextIndex((byte) '|', columnNames));
+					}
+					continue;
+				}
+
+				String patientNum = reader.nextString((byte) ',');
+				if(! patientNumsProcessed.add(patientNum)) {
+					continue;
+				}
+
+				for(int i = 0; reader.hasNext(); i++) {
+					float value = reader.nextFloat((byte) ',');
+					if(value != 0.0) {
+						indices.add(lineColumns.get(i));
+						nonZeroValues.add(value);
+					}
+				}
+				patientNums.add(patientNum);
+				pointers.add(indices.size());
+			}
+		} finally {
+			reader.close();
+		}
+
+		String[] columns = new String[columnNames.size()];
+		for(int i = 0; i < columns.length; i++) {
+			columns[i] = columnNames.getString(i);
+		}
+
+		return new CsrMatrix(
+				columns,
+				patientNums.toArray(new String[patientNums.size()]),
+				pointers.toArray(),
+				indices.toArray(),
+				nonZeroValues.toArray());
+	}
+
+	/**
+	 * Save to a binary file. The data is written to a uniquely named temporary
+	 * file in the same directory first, so that a partially written file is never
+	 * picked up as a cache, and concurrent writers of the same file (e.g. two
+	 * loads of the same csv file) do not overwrite each other's temporary files.
+	 */
+	public void write(String outputFile) throws IOException {
+
+		File file = new File(outputFile).getAbsoluteFile();
+		long start = System.currentTimeMillis();
+		File temp = File.createTempFile(file.getName() + ".", ".tmp", file.getParentFile());
+		DataOutputStream out = null;
+		boolean written = false;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			out.writeInt(magic);
+			out.writeInt(columns.length);
+			out.writeInt(rowIds.length);
+			out.writeInt(values.length);
+			for(String column : columns) {
+				writeString(out, column);
+			}
+			for(String rowId : rowIds) {
+				writeString(out, rowId);
+			}
+			for(int pointer : rowPointers) {
+				out.writeInt(pointer);
+			}
+			for(int index : columnIndices) {
+				out.writeInt(index);
+			}
+			for(float value : values) {
+				out.writeFloat(value);
+			}
+			out.close();
+			written = true;
+		} finally {
+			if(! written) {
+				if(out != null) {
+					out.close();
+				}
+				temp.delete();
+			}
+		}
+
+		if(temp.renameTo(file)) {
+			return;
+		}
+		if(file.exists() && file.lastModified() >= start) {
+			// another writer finished first; keep its file
+			temp.delete();
+			return;
+		}
+		// a stale file that can't be replaced in place
+		file.delete();
+		if(! temp.renameTo(file)) {
+			temp.delete();
+			throw new IOException("couldn't rename " + temp + " to " + file);
+		}
+	}
+
+	/**
+	 * Read a binary file written by write().
+	 */
+	public static CsrMatrix read(String inputFile) throws IOException {
+
+		RandomAccessFile file = new RandomAccessFile(inputFile, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if(buffer.getInt() != magic) {
+				throw new IOException("not a csr file: " + inputFile);
+			}
+			int numColumns = buffer.getInt();
+			int numRows = buffer.getInt();
+			int numValues = buffer.getInt();
+
+			String[] columns = new String[numColumns];
+			for(int i = 0; i < numColumns; i++) {
+				columns[i] = readString(buffer);
+			}
+			String[] rowIds = new String[numRows];
+			for(int i = 0; i < numRows; i++) {
+				rowIds[i] = readString(buffer);
+			}
+
+			int[] rowPointers = new int[numRows + 1];
+			buffer.asIntBuffer().get(rowPointers);
+			buffer.position(buffer.position() + 4 * rowPointers.length);
+			int[] columnIndices = new int[numValues];
+			buffer.asIntBuffer().get(columnIndices);
+			buffer.position(buffer.position() + 4 * numValues);
+			float[] values = new float[numValues];
+			buffer.asFloatBuffer().get(values);
+
+			return new CsrMatrix(columns, rowIds, rowPointers, columnIndices, values);
+		} catch (RuntimeException e) {
+			// a truncated or corrupted file
+			throw new IOException("couldn't read csr file: " + inputFile, e);
+		} finally {
+			file.close();
+		}
+	}
+
+	public int getNumberOfRows() {
+		return rowIds.length;
+	}
+
+	public String getRowId(int row) {
+		return rowIds[row];
+	}
+
+	/**
+	 * Make an instance from a row. Feature names are shared with the matrix.
+	 */
+	public Instance makeInstance(int row, String label) {
+
+		Instance instance = new Instance();
+		instance.setLabel(label);
+		for(int i = rowPointers[row]; i < rowPointers[row + 1]; i++) {
+			instance.addFeature(columns[columnIndices[i]], values[i]);
+		}
+
+		return instance;
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+
+		byte[] bytes = string.getBytes(Charsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, Charsets.UTF_8);
+	}
+
+	/**
+	 * Growable array of ints.
+	 */
+	private static class IntList {
+
+		private int[] elements = new int[1024];
+		private int size = 0;
+
+		public void add(int element) {
+			if(size == elements.length) {
+				elements = Arrays.copyOf(elements, 2 * size);
+			}
+			elements[size++] = element;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public int get(int index) {
+			if(index >= size) {
+				throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+			}
+			return elements[index];
+		}
+
+		public int[] toArray() {
+			return Arrays.copyOf(elements, size);
+		}
+	}
+
+	/**
+	 * Growable array of floats.
+	 */
+	private static class FloatList {
+
+		private float[] elements = new float[1024];
+		private int size = 0;
+
+		public void add(float element) {
+			if(size == elements.length) {
+				elements = Arrays.copyOf(elements, 2 * size);
+			}
+			elements[size++] = element;
+		}
+
+		public float[] toArray() {
+			return Arrays.copyOf(elements, size);
+		}
+	}
+
+	/**
+	 * Convert i2b2 csv files to binary files.
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if(args.length == 0) {
+			System.err.println("usage: CsrMatrix <csv file> ...");
+			return;
+		}
+
+		for(String csvFile : args) {
+			long start = System.currentTimeMillis();
+			CsrMatrix matrix = fromI2b2CSV(csvFile);
+			matrix.write(csvFile + extension);
+			System.out.format("%s: %d rows, %d columns, %d values, %d ms\n",
+					csvFile + extension, matrix.rowIds.length, matrix.columns.length,
+					matrix.values.length, System.currentTimeMillis() - start);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package data;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Read instances from a comma-separated file. 
+ * The file must conform to this format:
+ * 
+ * <label>,<feature>:<value>,...
+ */
+public class CsvInstanceReader implements InstanceReader {
+
+	private ByteLineReader reader;
+	private ByteInterner interner;
+
+	public CsvInstanceReader(String inputFile) throws FileNotFoundException {
+		this(inputFile, new ByteInterner());
+	}
+
+	/**
+	 * Feature names are interned using the specified interner (e.g. one that 
+	 * is shared by the readers of the training and the test set).
+	 */
+	public CsvInstanceReader(String inputFile, ByteInterner interner) throws FileNotFoundException {
+		this.reader = new ByteLineReader(inputFile);
+		this.interner = interner;
+	}
+
+	public Instance next() throws IOException {
+		if(! reader.nextLine()) {
+			return null;
+		}
+
+		Instance instance = new Instance();
+		instance.setLabel(reader.nextString((byte) ','));
+		// iterate over feature name-value pairs
+		while(reader.hasNext()) {
+			int feature = reader.nextIndex((byte) ':', interner);
+			instance.addFeature(interner.getString(feature), reader.nextFloat((byte) ','));
+		}
+
+		return instance;
+	}
+
+	public long getBytesRead() {
+		return reader.getBytesRead();
+	}
+
+	public void close() throws IOException {
+		reader.close();
+	}
+}
@@ -7,12 +7,9 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
 import java.util.Scanner;
-import java.util.Set;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.HashMultiset;
@@ -27,8 +24,10 @@ public class Dataset {
 	// string->int and int->string mappings
 	protected Alphabet featureAlphabet;
 	protected Alphabet labelAlphabet;
-	// document frequencies for features
-	protected Multiset<String> dfs; 
+	// feature id -> rows that contain it (made on demand, see getInvertedIndex())
+	protected InvertedIndex invertedIndex;
+	// true if the instances may be shared with other datasets (see view())
+	protected boolean shared;
 
 	/**
 	 * Constructor
@@ -37,19 +36,19 @@ public class Dataset {
 		instances = new ArrayList<Instance>();
 		featureAlphabet = new Alphabet();
 		labelAlphabet = new Alphabet();
-		dfs = HashMultiset.create();
 	}
 	
 	/**
-	 * Create a dataset from a list of instances
+	 * Create a dataset from a list of instances. The instances are copied
+	 * (see Instance.shallowCopy()), so the features are not duplicated 
+	 * until they are modified.
 	 */
 	public Dataset(List<Instance> sourceInstances) {
 		instances = new ArrayList<Instance>();
 		featureAlphabet = new Alphabet();
 		labelAlphabet = new Alphabet();
-		dfs = HashMultiset.create();
 		for(Instance sourceInstance : sourceInstances) {
-			instances.add(new Instance(sourceInstance));
+			instances.add(sourceInstance.shallowCopy());
 		}
 	}
 	
@@ -60,12 +59,11 @@ public class Dataset {
 	  instances = new ArrayList<Instance>();
 	  featureAlphabet = new Alphabet();
 	  labelAlphabet = new Alphabet();
-	  dfs = HashMultiset.create();
 	  for(Instance sourceInstance : sourceInstances1) {
-	    instances.add(new Instance(sourceInstance));
+	    instances.add(sourceInstance.shallowCopy());
 	  }
 	  for(Instance sourceInstance : sourceInstances2) {
-      instances.add(new Instance(sourceInstance));
+      instances.add(sourceInstance.shallowCopy());
     }
 	}
 
@@ -76,40 +74,68 @@ public class Dataset {
     instances = new ArrayList<Instance>();
     featureAlphabet = new Alphabet();
     labelAlphabet = new Alphabet();
-    dfs = HashMultiset.create();
     for(Instance sourceInstance : sourceInstances1) {
-      instances.add(new Instance(sourceInstance));
+      instances.add(sourceInstance.shallowCopy());
     }
     for(Instance sourceInstance : sourceInstances2) {
-      instances.add(new Instance(sourceInstance));
+      instances.add(sourceInstance.shallowCopy());
     }
     for(Instance sourceInstance : sourceInstances3) {
-      instances.add(new Instance(sourceInstance));
+      instances.add(sourceInstance.shallowCopy());
     }
   }
 	
+	/**
+	 * Create a dataset that contains the instances in a list. No copies are 
+	 * made: the instances are copied only when the dataset is about to 
+	 * modify them (see copyOnWrite()).
+	 */
+	public static Dataset viewOf(List<Instance> sourceInstances) {
+		Dataset dataset = new Dataset();
+		dataset.instances.addAll(sourceInstances);
+		dataset.shared = true;
+		return dataset;
+	}
+	
+	/**
+	 * Create a dataset that contains the instances at the specified 
+	 * positions in this dataset. The instances are shared by both datasets
+	 * until one of them modifies them (see copyOnWrite()).
+	 */
+	public Dataset view(int[] rows) {
+		Dataset dataset = new Dataset();
+		for(int row : rows) {
+			dataset.instances.add(instances.get(row));
+		}
+		dataset.shared = true;
+		shared = true;
+		return dataset;
+	}
+	
+	/**
+	 * Make sure no other dataset sees the changes this dataset is about to make 
+	 * to its instances (labels, class probabilities, features, or vectors).
+	 * Shared instances are replaced by copies (see Instance.shallowCopy()).
+	 */
+	public void copyOnWrite() {
+		if(shared) {
+			List<Instance> copies = new ArrayList<Instance>(instances.size());
+			for(Instance instance : instances) {
+				copies.add(instance.shallowCopy());
+			}
+			instances = copies;
+			shared = false;
+		}
+	}
+	
 	/**
 	 * Load instances from comma-separated file. 
 	 * The file must conform to this format:
 	 * 
 	 * <label>,<feature>:<value>,...
 	 */
-	public void loadCSVFile(String inputFile) throws FileNotFoundException {
-    File file = new File(inputFile);
-    Scanner scan = new Scanner(file);
-    while(scan.hasNextLine()) {
-      String line = scan.nextLine();
-      String[] elements = line.split(","); // e.g. <label>,<feat>:<value>,...
-      Instance instance = new Instance();
-      instance.setLabel(elements[0]);
-      // iterate over feature name-value pairs
-      for(int i = 1; i < elements.length; i++) {
-      	String[] pair = elements[i].split(":");
-      	instance.addFeature(pair[0], Float.parseFloat(pair[1]));
-      }
-      instances.add(instance);
-    }
-    scan.close();
+	public void loadCSVFile(String inputFile) throws IOException {
+		load(new CsvInstanceReader(inputFile));
 	}
 	
 	/**
@@ -118,22 +144,23 @@ public class Dataset {
 	 * 
 	 * <feature1>:<value1> <feature2>:<value2> ... <label>
 	 */
-	public void loadMalletFile(String inputFile) throws FileNotFoundException {
-    File file = new File(inputFile);
-    Scanner scan = new Scanner(file);
-    while(scan.hasNextLine()) {
-      String line = scan.nextLine();
-      String[] elements = line.split(" "); 
-      Instance instance = new Instance();
-      instance.setLabel(elements[elements.length - 1]);
-      // iterate over feature name-value pairs
-      for(int i = 0; i < elements.length - 1; i++) {
-      	String[] pair = elements[i].split(":");
-      	instance.addFeature(pair[0], Float.parseFloat(pair[1]));
-      }
-      instances.add(instance);
-    }
-    scan.close();
+	public void loadMalletFile(String inputFile) throws IOException {
+		load(new MalletInstanceReader(inputFile));
+	}
+	
+	/**
+	 * Load all instances from a reader and close it.
+	 */
+	public void load(InstanceReader reader) throws IOException {
+		invalidateIndex();
+		try {
+			Instance instance;
+			while((instance = reader.next()) != null) {
+				instances.add(instance);
+			}
+		} finally {
+			reader.close();
+		}
 	}
 	
 	/**
@@ -141,6 +168,7 @@ public class Dataset {
 	 * Specify the source of randomness.
 	 */
 	public List<Instance> popRandom(int n, Random random) {
+		invalidateIndex();
 		Collections.shuffle(instances, random);
 		List<Instance> removedInstances = new ArrayList<Instance>();
 		for(int i = 0; i < n; i++) {
@@ -158,8 +186,9 @@ public class Dataset {
 	 * Add instances to the @Dataset.
 	 */
 	public void add(List<Instance> sourceInstances) {
+		invalidateIndex();
 		for(Instance instance : sourceInstances) {
-			instances.add(new Instance(instance));
+			instances.add(instance.shallowCopy());
 		}
 	}
 	
@@ -167,6 +196,7 @@ public class Dataset {
 	 * Add a single instance.
 	 */
 	public void add(Instance instance) {
+		invalidateIndex();
 		instances.add(instance);
 	}
 	
@@ -232,9 +262,10 @@ public class Dataset {
 	 * a probability distribution over labels is needed rather than
 	 * a single gold labels for each instance (e.g. for EM algorithm).
 	 */
-	public void setInstanceClassProbabilityDistribution(Set<String> uniqueLabels) {
+	public void setInstanceClassProbabilityDistribution(Alphabet labelAlphabet) {
+	  copyOnWrite();
 	  for(Instance instance : instances) {
-	    instance.setClassProbabilities(uniqueLabels);
+	    instance.setClassProbabilities(labelAlphabet);
 	  }
 	}
 	
@@ -253,45 +284,110 @@ public class Dataset {
 	}
 	
 	/**
-	 * Make sparse vector representations for each instance.
+	 * Make sparse vector representations for each instance. The cost is linear 
+	 * in the number of features of each instance. Instances whose vectors were 
+	 * already made with the current feature alphabet (and whose features have not
+	 * changed since) are skipped. So calling this method again after adding new 
+	 * instances only vectorizes the new instances.
 	 */
 	public void makeVectors() {
 		for(Instance instance : instances) {
-			instance.resetVector(); // in case vector already exists
-			for(int index = Alphabet.startIndex; index < Alphabet.startIndex + featureAlphabet.size(); index++) {
-				String featureName = featureAlphabet.getString(index); 
-				Float featureValue = instance.getFeatureValue(featureName);
-				if(featureValue != null) {
-					instance.setVector(index, featureValue);
-				}
+			if(! instance.hasVector(featureAlphabet)) {
+				copyOnWrite();
+				invalidateIndex();
+				break;
+			}
+		}
+		for(Instance instance : instances) {
+			if(! instance.hasVector(featureAlphabet)) {
+				instance.makeVector(featureAlphabet);
 			}
 		}
 	}
 	
 	/**
    * Discard features below and above the specified 
-   * min and max document frequencies. 
+   * min and max document frequencies. If the feature alphabet
+   * contains every feature, the document frequencies come from the
+   * inverted index; otherwise (e.g. before makeAlphabets()) they
+   * are counted over the features of the instances.
    * 
    * Alphabets are not affected and may need to be regenerated.
 	 */
 	public void discardFeatures(int min, int max) {
-		// create a document frequency histogram
+		int[] documentFrequencies = null;
+		Multiset<String> dfs = null;
+		if(alphabetCoversFeatures()) {
+			makeVectors();
+			documentFrequencies = getInvertedIndex().getDocumentFrequencies();
+		} else {
+			dfs = HashMultiset.create();
+			for(Instance instance : instances) {
+				for(String feature : instance.getFeatures().keySet()) {
+					dfs.add(feature);
+				}
+			}
+		}
+		copyOnWrite();
+		// discard low and high-frequency features
 		for(Instance instance : instances) {
+			List<String> discarded = new ArrayList<String>();
 			for(String feature : instance.getFeatures().keySet()) {
-				dfs.add(feature);
+				int documentFrequency;
+				if(dfs != null) {
+					documentFrequency = dfs.count(feature);
+				} else {
+					// the alphabet contains every feature (see alphabetCoversFeatures()), so each
+					// feature is in the vectors (zero values included) and has an entry in the index
+					documentFrequency = documentFrequencies[featureAlphabet.indexOf(feature)];
+				}
+				if(documentFrequency < min || documentFrequency > max) {
+					discarded.add(feature);
+				}
 			}
+			for(String feature : discarded) {
+				instance.removeFeature(feature);
+			}
+			instance.resetVector(); // features changed
+		}
+		invalidateIndex();
+	}
+	
+	/**
+	 * True if there is a feature alphabet and it contains the features of all instances.
+	 */
+	private boolean alphabetCoversFeatures() {
+		if(featureAlphabet == null) {
+			return false;
 		}
-		// discard low and high-frequency features
 		for(Instance instance : instances) {
-			Iterator<Map.Entry<String, Float>> iterator = instance.getFeatures().entrySet().iterator();
-			while(iterator.hasNext()) {
-				Map.Entry<String, Float> entry = iterator.next();
-				String feature = entry.getKey();
-				if(dfs.count(feature) < min || dfs.count(feature) > max) {
-					iterator.remove();
+			for(String feature : instance.getFeatures().keySet()) {
+				if(featureAlphabet.indexOf(feature) < 0) {
+					return false;
 				}
 			}
 		}
+		return true;
+	}
+	
+	/**
+	 * Return the inverted index of the instance vectors (feature id -> rows).
+	 * It is made on the first call and reused until the dataset is modified
+	 * by its own methods; assumes the vectors were made (see makeVectors()).
+	 * Changes made directly to the instances are not detected.
+	 */
+	public InvertedIndex getInvertedIndex() {
+		if(invertedIndex == null || ! invertedIndex.indexes(instances)) {
+			invertedIndex = new InvertedIndex(instances);
+		}
+		return invertedIndex;
+	}
+	
+	/**
+	 * Discard the inverted index; call after modifying the instances or their vectors.
+	 */
+	protected void invalidateIndex() {
+		invertedIndex = null;
 	}
 	
 	/**
@@ -302,19 +398,21 @@ public class Dataset {
 		Split[] splits = new Split[n];
 		int[] foldAssignment = CrossValidation.assignToFolds(instances.size(), n);
 		for(int fold = 0; fold < n; fold++) {
-			List<Instance> trainInstances = new ArrayList<Instance>();
-			List<Instance> testInstances = new ArrayList<Instance>();
-			for(int instanceIndex : CrossValidation.getPoolDocuments(foldAssignment, fold)) {
-				trainInstances.add(instances.get(instanceIndex));
-			}
-			for(int instanceIndex : CrossValidation.getTestDocuments(foldAssignment, fold)) {
-				testInstances.add(instances.get(instanceIndex));
-			}
-			splits[fold] = new Split(trainInstances, testInstances);
+			int[] poolRows = toArray(CrossValidation.getPoolDocuments(foldAssignment, fold));
+			int[] testRows = toArray(CrossValidation.getTestDocuments(foldAssignment, fold));
+			splits[fold] = new Split(this, poolRows, testRows);
 		}
 		return splits;
 	}
 	
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for(int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+	
 	/**
 	 * Get two subsets of instances of size1 and size2. 
 	 * Wrap each subset into a Dataset object.
@@ -419,13 +517,43 @@ public class Dataset {
 	 * Return the removed instance.
 	 */
 	public Instance removeInstance(int index) {
+		invalidateIndex();
 		return instances.remove(index);
 	}
+
+	/**
+	 * Remove the instances at the specified indices in one pass over the dataset.
+	 * Return the removed instances in the order of the indices.
+	 */
+	public List<Instance> removeInstances(int[] indices) {
+		invalidateIndex();
+
+		boolean[] remove = new boolean[instances.size()];
+		List<Instance> removed = new ArrayList<Instance>(indices.length);
+		for(int index : indices) {
+			if(! remove[index]) {
+				remove[index] = true;
+				removed.add(instances.get(index));
+			}
+		}
+
+		List<Instance> kept = new ArrayList<Instance>(instances.size() - removed.size());
+		for(int index = 0; index < instances.size(); index++) {
+			if(! remove[index]) {
+				kept.add(instances.get(index));
+			}
+		}
+		instances = kept;
+
+		return removed;
+	}
 	
 	/**
 	 * Normalize feature values.
 	 */
 	public void normalize() {
+	  copyOnWrite();
+	  invalidateIndex();
 	  for(Instance instance: instances) {
 	    instance.normalize();
 	  }
@@ -437,6 +565,7 @@ public class Dataset {
 	 * WARNING: This method modifies the dataset.
 	 */
 	public void hideLabels() {
+	  copyOnWrite();
 	  for(Instance instance : instances) {
 	    instance.setTemp(instance.getLabel());
 	    instance.setLabel(null);
@@ -449,6 +578,7 @@ public class Dataset {
    * WARNING: This method modifies the dataset.
    */
   public void restoreLabels() {
+    copyOnWrite();
     for(Instance instance : instances) {
       instance.setLabel(instance.getTemp());
       instance.setTemp(null);
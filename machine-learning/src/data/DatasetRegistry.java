@@ -0,0 +1,131 @@
+package data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keep i2b2 datasets in memory so that each (data file, label file) pair is
+ * read once no matter how many experiments and threads use it. The loaded
+ * instances are never modified: callers get datasets made of shallow copies 
+ * (see Instance.shallowCopy()), which share the features and the vectors 
+ * with the loaded instances but have their own labels.
+ * 
+ * The vectors of both the labeled and the unlabeled instances are made 
+ * once using the feature alphabet of the labeled instances. The returned
+ * datasets come with this feature alphabet and no label alphabet (labels 
+ * may need to be remapped first; see I2b2Dataset.mapLabels()).
+ */
+public class DatasetRegistry {
+
+	private static final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+	/**
+	 * Labeled instances from a file in i2b2 format (see I2b2Dataset.loadCSVFile()).
+	 */
+	public static I2b2Dataset getLabeled(String dataPath, String labelPath) throws IOException {
+
+		Entry entry = getEntry(dataPath, labelPath);
+		return makeDataset(entry.getLabeled(), entry.getFeatureAlphabet());
+	}
+
+	/**
+	 * The same n unlabeled instances I2b2Dataset.loadFromCSVFile() selects.
+	 */
+	public static I2b2Dataset getUnlabeled(String dataPath, String labelPath, int n) throws IOException {
+
+		Entry entry = getEntry(dataPath, labelPath);
+		return makeDataset(entry.getUnlabeled(n), entry.getFeatureAlphabet());
+	}
+
+	/**
+	 * Forget all datasets.
+	 */
+	public static void clear() {
+
+		synchronized(entries) {
+			entries.clear();
+		}
+	}
+
+	private static Entry getEntry(String dataPath, String labelPath) {
+
+		String key = dataPath + "\n" + labelPath;
+		synchronized(entries) {
+			Entry entry = entries.get(key);
+			if(entry == null) {
+				entry = new Entry(dataPath, labelPath);
+				entries.put(key, entry);
+			}
+			return entry;
+		}
+	}
+
+	private static I2b2Dataset makeDataset(List<Instance> instances, Alphabet featureAlphabet) {
+
+		I2b2Dataset dataset = new I2b2Dataset();
+		for(Instance instance : instances) {
+			dataset.add(instance.shallowCopy());
+		}
+		dataset.setFeatureAlphabet(featureAlphabet);
+
+		return dataset;
+	}
+
+	/**
+	 * Instances loaded from a pair of files. Loading happens when the 
+	 * instances are first needed, by one thread at a time.
+	 */
+	private static class Entry {
+
+		private String dataPath;
+		private String labelPath;
+		private List<Instance> labeled;
+		private Alphabet featureAlphabet;
+		// unlabeled instances are a random sample that only grows;
+		// the sample of size n is always the first n instances
+		private List<Instance> unlabeled;
+
+		public Entry(String dataPath, String labelPath) {
+			this.dataPath = dataPath;
+			this.labelPath = labelPath;
+		}
+
+		public synchronized List<Instance> getLabeled() throws IOException {
+
+			if(labeled == null) {
+				I2b2Dataset dataset = new I2b2Dataset();
+				dataset.loadCSVFile(dataPath, labelPath);
+				dataset.makeAlphabets();
+				dataset.makeVectors();
+				featureAlphabet = dataset.getFeatureAlphabet();
+				labeled = dataset.getInstances();
+			}
+
+			return labeled;
+		}
+
+		public synchronized Alphabet getFeatureAlphabet() throws IOException {
+
+			getLabeled();
+			return featureAlphabet;
+		}
+
+		public synchronized List<Instance> getUnlabeled(int n) throws IOException {
+
+			if(unlabeled == null || unlabeled.size() < n) {
+				// loadFromCSVFile() always shuffles the same way, so a 
+				// larger sample starts with the instances of a smaller one
+				I2b2Dataset dataset = new I2b2Dataset();
+				dataset.loadFromCSVFile(dataPath, labelPath, n);
+				dataset.setFeatureAlphabet(getFeatureAlphabet());
+				dataset.makeVectors();
+				unlabeled = dataset.getInstances();
+			}
+
+			return new ArrayList<Instance>(unlabeled.subList(0, n));
+		}
+	}
+}
@@ -2,11 +2,10 @@ package data;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -19,128 +18,49 @@ public class I2b2Dataset extends Dataset {
 	 * Load instances from comma-separated file. Map patient_num(s) to labels.
 	 * The file is formated using i2b2 phenotype format. Each patient_num is 
 	 * read only once (some datasets have multiple vectors for the same patient). 
+	 * The vectors are read from a binary cache file if one exists (see CsrMatrix).
 	 */
-	public void loadCSVFile(String vectorFile, String labelFile) throws FileNotFoundException {
+	public void loadCSVFile(String vectorFile, String labelFile) throws IOException {
     
-		HashSet<String> patientNumsProcessed = new HashSet<String>();
 		Map<String, String> patientNumToLabel = loadLabels(labelFile);
+		CsrMatrix matrix = CsrMatrix.load(vectorFile);
 		
-		File file = new File(vectorFile);
-    Scanner scan = new Scanner(file);
-    
-    String[] columns = null;
-    
-    while(scan.hasNextLine()) {
-    	String line = scan.nextLine();
-
-    	// skip comments and empty lines
-    	if(line.startsWith("#") || line.length() == 0) {
-    		continue;
-    	}
-    	
-    	// read the line containing column names
-    	if(line.startsWith("patient_num")) {
-    		columns = line.split("\\|");
-    		continue;
-    	}
-    	
-    	// now read the data
-      String[] elements = line.split(",");
-      String patientNum = elements[0];
-      
-      // we'll only need the vectors for which there are labels
-      if(patientNumToLabel.containsKey(patientNum)) {
-      	
-      	// only store each patient once
-      	if(patientNumsProcessed.contains(patientNum)) {
-      		continue;
-      	} else {
-      		patientNumsProcessed.add(patientNum);
-      	}
-      	
-      	Instance instance = new Instance();
-      	instance.setLabel(patientNumToLabel.get(patientNum));
-
-      	// iterate over vector elements
-      	for(int i = 1; i < elements.length; i++) {
-      		String feature = columns[i];
-      		Float value = Float.parseFloat(elements[i]);
-      		if(value != 0.0) {
-      			instance.addFeature(feature, value);
-      		}
-      	}
-        
-        // instance.collapseNegatedFeatures();
-      	instances.add(instance);
-      }
-    }
-    
-    scan.close();
+		for(int row = 0; row < matrix.getNumberOfRows(); row++) {
+			String patientNum = matrix.getRowId(row);
+			
+			// we'll only need the vectors for which there are labels
+			if(patientNumToLabel.containsKey(patientNum)) {
+				Instance instance = matrix.makeInstance(row, patientNumToLabel.get(patientNum));
+				// instance.collapseNegatedFeatures();
+				instances.add(instance);
+			}
+		}
 	}
 	
 	 /**
    * Load n unlabeled instances from a comma-separated file. Skip the vectors
    * that have labels. If more than n examples exist, select n at random.
    */
-  public void loadFromCSVFile(String vectorFile, String labelFile, int n) throws FileNotFoundException {
+  public void loadFromCSVFile(String vectorFile, String labelFile, int n) throws IOException {
     
-    HashSet<String> patientNumsProcessed = new HashSet<String>();
     Map<String, String> patientNumToLabel = loadLabels(labelFile);
-    File file = new File(vectorFile);
-    Scanner scan = new Scanner(file);
-    List<Instance> unlabeledInstances = new LinkedList<Instance>();
-    String[] columns = null;
+    CsrMatrix matrix = CsrMatrix.load(vectorFile);
+    List<Integer> unlabeledRows = new ArrayList<Integer>();
     
-    while(scan.hasNextLine()) {
-      String line = scan.nextLine();
-
-      // skip comments and empty lines
-      if(line.startsWith("#") || line.length() == 0) {
-        continue;
-      }
-      
-      // read the line containing column names
-      if(line.startsWith("patient_num")) {
-        columns = line.split("\\|");
-        continue;
-      }
-      
-      // now read the data
-      String[] elements = line.split(",");
-      String patientNum = elements[0];
-      
+    for(int row = 0; row < matrix.getNumberOfRows(); row++) {
       // skip vectors that have labels
-      if(patientNumToLabel.containsKey(patientNum)) {
-        continue;
-      }
-        
-      // only store each patient once
-      if(patientNumsProcessed.contains(patientNum)) {
-        continue;
-      } else {
-        patientNumsProcessed.add(patientNum);
+      if(! patientNumToLabel.containsKey(matrix.getRowId(row))) {
+        unlabeledRows.add(row);
       }
-
-      Instance instance = new Instance();
-      instance.setLabel(null);
-
-      // iterate over vector elements
-      for(int i = 1; i < elements.length; i++) {
-        String feature = columns[i];
-        Float value = Float.parseFloat(elements[i]);
-        if(value != 0.0) {
-          instance.addFeature(feature, value);
-        }
-      }
-
-      unlabeledInstances.add(instance);
     }
     
-    scan.close();
-    
-    // select a random sample of n examples
-    Collections.shuffle(unlabeledInstances, new Random(100));
-    this.instances = unlabeledInstances.subList(0, n);
+    // select a random sample of n examples; only these need to be made into instances
+    Collections.shuffle(unlabeledRows, new Random(100));
+    List<Instance> unlabeledInstances = new ArrayList<Instance>();
+    for(int row : unlabeledRows.subList(0, n)) {
+      unlabeledInstances.add(matrix.makeInstance(row, null));
+    }
+    this.instances = unlabeledInstances;
   }
 	
 	/**
@@ -168,6 +88,7 @@ public class I2b2Dataset extends Dataset {
 	 */
 	public void mapLabels(Set<String> from, String to) {
 	  
+	  copyOnWrite();
 	  for(Instance instance : instances) {
 	    if(from.contains(instance.getLabel())) {
 	      instance.setLabel(to);
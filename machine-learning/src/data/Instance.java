@@ -1,12 +1,12 @@
 package data;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 
 import com.google.common.base.Joiner;
 
@@ -17,21 +17,27 @@ public class Instance {
 	// Feature name-value pairs
 	private Map<String, Float> features;
 	// sparse vector representation (e.g. "22->4, 28->1, ...")
-	private Map<Integer, Float> vector;
-	// probability distribution over classes
-	private Map<String, Float> labels;
+	private SparseVector vector;
+	// feature alphabet and its size when the vector was made
+	private Alphabet vectorAlphabet;
+	private int vectorAlphabetSize;
+	// incremented every time the features change
+	private int featureVersion;
+	// value of featureVersion when the vector was made
+	private int vectorFeatureVersion;
+	// probability distribution over classes indexed by label alphabet index
+	private double[] classProbabilities;
 	// field that can hold anything
 	private String temp;
-	// list of labels (e.g. for gibbs sampling)
-	private List<Integer> sequence;
+	// true if the features and the vector may be shared with other instances
+	private boolean shared;
 	
 	public Instance() {
 		label = "";
 		features = new HashMap<String, Float>();
-		vector = new TreeMap<Integer, Float>();
-		labels = new HashMap<String, Float>();
+		vector = new SparseVector();
+		classProbabilities = new double[0];
 		temp = null;
-		sequence = new ArrayList<Integer>();
 	}
 
 	/**
@@ -40,80 +46,178 @@ public class Instance {
 	public Instance(Instance sourceInstance) {
 		label = sourceInstance.getLabel();
 		features = new HashMap<String, Float>();
-		vector = new TreeMap<Integer, Float>(); 
-		labels = sourceInstance.getClassProbabilities(); 
+		classProbabilities = sourceInstance.classProbabilities.clone(); 
 		temp = sourceInstance.getTemp();
-		sequence = new ArrayList<Integer>();
-		for(Integer label : sourceInstance.getSequence()) {
-		  sequence.add(label);
-		}
 		
 		// features can be removed by feature selection, so need deep copy
 		// features = sourceInstance.getFeatures(); 
 		for(String feature : sourceInstance.getFeatures().keySet()) {
 			features.put(feature, sourceInstance.getFeatureValue(feature));
 		}
+		
+		// the features are the same, so the vector does not need to be remade
+		vector = new SparseVector(sourceInstance.vector);
+		vectorAlphabet = sourceInstance.vectorAlphabet;
+		vectorAlphabetSize = sourceInstance.vectorAlphabetSize;
+		featureVersion = sourceInstance.featureVersion;
+		vectorFeatureVersion = sourceInstance.vectorFeatureVersion;
+	}
+	
+	/**
+	 * Create a copy that shares the features and the vector with this instance.
+	 * The label, class probabilities and temp are the copy's own.
+	 * The features and the vector are copied before either instance changes them.
+	 */
+	public Instance shallowCopy() {
+		Instance copy = new Instance();
+		copy.label = label;
+		copy.classProbabilities = classProbabilities.clone();
+		copy.temp = temp;
+		
+		copy.features = features;
+		copy.vector = vector;
+		copy.vectorAlphabet = vectorAlphabet;
+		copy.vectorAlphabetSize = vectorAlphabetSize;
+		copy.featureVersion = featureVersion;
+		copy.vectorFeatureVersion = vectorFeatureVersion;
+		copy.shared = true;
+		shared = true;
+		
+		return copy;
+	}
+	
+	/**
+	 * Take private copies of the features and the vector before changing them.
+	 */
+	private void unshare() {
+		if(shared) {
+			features = new HashMap<String, Float>(features);
+			vector = new SparseVector(vector);
+			shared = false;
+		}
 	}
 	
+	/**
+	 * Features may be shared with other instances, so the map should not 
+	 * be modified directly. Use addFeature() and removeFeature() instead.
+	 */
 	public Map<String, Float> getFeatures() {
 		return features;
 	}
 	
-	public Map<Integer, Float> getVector() {
+	public SparseVector getVector() {
 		return vector;
 	}
 	
-	public Map<String, Float> getClassProbabilities() {
-	  return labels;
+	public double[] getClassProbabilities() {
+	  return classProbabilities;
+	}
+	
+	/**
+	 * Class probability array of the specified size. The array is
+	 * reused if it has the right size, so that a classifier (e.g. 
+	 * the E-step of EM) can write the distribution into it in place. 
+	 */
+	public double[] getClassProbabilities(int numClasses) {
+		if(classProbabilities.length != numClasses) {
+			classProbabilities = new double[numClasses];
+		}
+		return classProbabilities;
 	}
 	
-	public float getClassProbability(String label) {
-		return labels.get(label);
+	public double getClassProbability(int labelIndex) {
+		return classProbabilities[labelIndex];
 	}
 	
 	/**
 	 * Hard class assignement using this instance's label.
 	 */
-	public void setClassProbabilities(Set<String> uniqueLabels) {
-		for(String l : uniqueLabels) {
-			if(l.equals(label)) {
-				labels.put(l, 1.0f);
-			} else {
-				labels.put(l, 0.0f);
-			}
+	public void setClassProbabilities(Alphabet labelAlphabet) {
+		double[] probabilities = getClassProbabilities(labelAlphabet.size());
+		Arrays.fill(probabilities, 0);
+		int labelIndex = labelAlphabet.indexOf(label);
+		if(labelIndex >= 0) {
+			probabilities[labelIndex] = 1;
 		}
 	}
 	
 	/**
 	 * Soft class assignments (e.g. obtained from a classifier).
 	 */
-	public void setLabelProbabilityDistribution(Map<String, Float> classDistribution) {
-		for(String key : classDistribution.keySet()) {
-			labels.put(key, classDistribution.get(key));
-		}
+	public void setClassProbabilities(double[] classDistribution) {
+		System.arraycopy(classDistribution, 0, getClassProbabilities(classDistribution.length), 0, classDistribution.length);
 	}
 	
 	public void addFeature(String name, float value) {
+		unshare();
 		features.put(name, value);
+		featureVersion++;
+	}
+	
+	public void removeFeature(String name) {
+		unshare();
+		features.remove(name);
+		featureVersion++;
 	}
 	
 	public Float getFeatureValue(String name) {
 		return features.get(name);
 	}
 	
+	/**
+	 * Value of a vector dimension or null if this instance
+	 * does not contain the dimension.
+	 */
 	public Float getDimensionValue(int dimension) {
-		return vector.get(dimension);
+		int position = vector.find(dimension);
+		return position < 0 ? null : vector.getValue(position);
 	}
 	
 	/**
 	 * Sparse vectors may need to be regenerated.
 	 */
 	public void resetVector() {
-	  vector = new TreeMap<Integer, Float>();
+	  vector = new SparseVector();
+	  vectorAlphabet = null;
 	}
 	
 	public void setVector(int dimension, float value) {
-		vector.put(dimension, value);
+		unshare();
+		vector.set(dimension, value);
+		vectorAlphabet = null;
+	}
+	
+	/**
+	 * Make the sparse vector by mapping each feature name to its
+	 * index in the alphabet. Features not in the alphabet are skipped.
+	 */
+	public void makeVector(Alphabet featureAlphabet) {
+		int[] indices = new int[features.size()];
+		float[] values = new float[features.size()];
+		int n = 0;
+		for(Map.Entry<String, Float> entry : features.entrySet()) {
+			int index = featureAlphabet.indexOf(entry.getKey());
+			if(index >= 0) {
+				indices[n] = index;
+				values[n] = entry.getValue();
+				n++;
+			}
+		}
+		vector = SparseVector.fromUnsorted(indices, values, n);
+		vectorAlphabet = featureAlphabet;
+		vectorAlphabetSize = featureAlphabet.size();
+		vectorFeatureVersion = featureVersion;
+	}
+	
+	/**
+	 * True if the vector was made using this alphabet and neither the alphabet
+	 * nor the features have changed since. Alphabets only grow, so comparing
+	 * alphabet sizes is enough to tell if it has changed.
+	 */
+	public boolean hasVector(Alphabet featureAlphabet) {
+		return vectorAlphabet == featureAlphabet && 
+		    vectorAlphabetSize == featureAlphabet.size() &&
+		    vectorFeatureVersion == featureVersion;
 	}
 	
 	public String getLabel() {
@@ -132,14 +236,6 @@ public class Instance {
 	  this.temp = misc;
 	}
 	
-	public List<Integer> getSequence() {
-	  return sequence;
-	}
-	
-	public void addToSequence(int value) {
-	  sequence.add(value);
-	}
-	
 	/**
 	 * Represent sparse vector as string using the following format:
 	 * 
@@ -148,8 +244,8 @@ public class Instance {
 	 */
 	public String getVectorAsString(String valueSeparator, String featureSeparator) {
 		List<String> stringRepresentation = new ArrayList<String>();
-		for(Integer dimension : vector.keySet()) {
-			String nameValuePair = String.format("%d%s%s", dimension, valueSeparator, vector.get(dimension));
+		for(int i = 0; i < vector.size(); i++) {
+			String nameValuePair = String.format("%d%s%s", vector.getIndex(i), valueSeparator, vector.getValue(i));
 			stringRepresentation.add(nameValuePair);
 		}
 		Joiner joiner = Joiner.on(featureSeparator);
@@ -184,10 +280,12 @@ public class Instance {
 	 * so be sure to regenerate the vector if needed.
 	 */
 	public void normalize() {
+	  unshare();
 	  float length = getLength();
 	  for(String featureName : features.keySet()) {
 	    features.put(featureName, features.get(featureName) / length);
 	  }
+	  featureVersion++;
 	}
 	
   /**
@@ -216,6 +314,8 @@ public class Instance {
       }
     }
     
+    unshare();
     features = newFeatures;
+    featureVersion++;
   }
 }
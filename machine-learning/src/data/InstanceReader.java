@@ -0,0 +1,21 @@
+package data;
+
+import java.io.IOException;
+
+/**
+ * Read instances from a file one at a time (see Dataset.load()).
+ */
+public interface InstanceReader {
+
+	/**
+	 * Read the next instance. Return null if there are no more instances.
+	 */
+	public Instance next() throws IOException;
+
+	/**
+	 * Number of bytes read from the file so far.
+	 */
+	public long getBytesRead();
+
+	public void close() throws IOException;
+}
@@ -0,0 +1,119 @@
+package data;
+
+import java.util.List;
+
+/**
+ * Maps each feature id to the rows (instances) whose vectors contain it,
+ * in increasing row order, and to the values of the feature in those rows.
+ * The postings are stored in primitive arrays. Built from the vectors of
+ * a list of instances; see Dataset.getInvertedIndex().
+ */
+public class InvertedIndex {
+
+	private static final int[] NO_ROWS = new int[0];
+	private static final float[] NO_VALUES = new float[0];
+
+	// list of instances that was indexed and its size at the time
+	private List<Instance> instances;
+	private int numRows;
+
+	private int[][] rows;
+	private float[][] values;
+
+	/**
+	 * Index the vectors of the instances. Makes two passes over the vectors:
+	 * one to count the postings of each feature and one to fill them in.
+	 */
+	public InvertedIndex(List<Instance> instances) {
+
+		this.instances = instances;
+		numRows = instances.size();
+
+		int numDimensions = 0;
+		for(Instance instance : instances) {
+			SparseVector vector = instance.getVector();
+			if(vector.size() > 0) {
+				numDimensions = Math.max(numDimensions, vector.getIndex(vector.size() - 1) + 1);
+			}
+		}
+
+		int[] documentFrequencies = new int[numDimensions];
+		for(Instance instance : instances) {
+			SparseVector vector = instance.getVector();
+			for(int i = 0; i < vector.size(); i++) {
+				documentFrequencies[vector.getIndex(i)]++;
+			}
+		}
+
+		rows = new int[numDimensions][];
+		values = new float[numDimensions][];
+		for(int feature = 0; feature < numDimensions; feature++) {
+			rows[feature] = new int[documentFrequencies[feature]];
+			values[feature] = new float[documentFrequencies[feature]];
+		}
+
+		int[] fill = new int[numDimensions];
+		for(int row = 0; row < numRows; row++) {
+			SparseVector vector = instances.get(row).getVector();
+			for(int i = 0; i < vector.size(); i++) {
+				int feature = vector.getIndex(i);
+				rows[feature][fill[feature]] = row;
+				values[feature][fill[feature]] = vector.getValue(i);
+				fill[feature]++;
+			}
+		}
+	}
+
+	/**
+	 * True if this index was built from the given list and the list has not
+	 * grown or shrunk since. Changes to the vectors are not detected.
+	 */
+	boolean indexes(List<Instance> instances) {
+		return this.instances == instances && numRows == instances.size();
+	}
+
+	/**
+	 * Rows that contain the feature in increasing order. Do not modify.
+	 */
+	public int[] getRows(int feature) {
+		return feature >= 0 && feature < rows.length ? rows[feature] : NO_ROWS;
+	}
+
+	/**
+	 * Values of the feature in the rows returned by getRows(). Do not modify.
+	 */
+	public float[] getValues(int feature) {
+		return feature >= 0 && feature < values.length ? values[feature] : NO_VALUES;
+	}
+
+	/**
+	 * Number of rows that contain the feature.
+	 */
+	public int getDocumentFrequency(int feature) {
+		return getRows(feature).length;
+	}
+
+	/**
+	 * Document frequency of each feature id.
+	 */
+	public int[] getDocumentFrequencies() {
+
+		int[] documentFrequencies = new int[rows.length];
+		for(int feature = 0; feature < rows.length; feature++) {
+			documentFrequencies[feature] = rows[feature].length;
+		}
+
+		return documentFrequencies;
+	}
+
+	/**
+	 * One more than the largest feature id in the index.
+	 */
+	public int getNumberOfDimensions() {
+		return rows.length;
+	}
+
+	public int getNumberOfRows() {
+		return numRows;
+	}
+}
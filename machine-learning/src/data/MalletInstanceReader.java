@@ -0,0 +1,49 @@
+package data;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Read instances from a space-separated Mallet-style formatted file.
+ * The file must look like this:
+ * 
+ * <feature1>:<value1> <feature2>:<value2> ... <label>
+ */
+public class MalletInstanceReader implements InstanceReader {
+
+	private ByteLineReader reader;
+	private ByteInterner interner;
+
+	public MalletInstanceReader(String inputFile) throws FileNotFoundException {
+		this(inputFile, new ByteInterner());
+	}
+
+	public MalletInstanceReader(String inputFile, ByteInterner interner) throws FileNotFoundException {
+		this.reader = new ByteLineReader(inputFile);
+		this.interner = interner;
+	}
+
+	public Instance next() throws IOException {
+		if(! reader.nextLine()) {
+			return null;
+		}
+
+		Instance instance = new Instance();
+		instance.setLabel(reader.removeLastToken((byte) ' '));
+		// iterate over feature name-value pairs
+		while(reader.hasNext()) {
+			int feature = reader.nextIndex((byte) ':', interner);
+			instance.addFeature(interner.getString(feature), reader.nextFloat((byte) ' '));
+		}
+
+		return instance;
+	}
+
+	public long getBytesRead() {
+		return reader.getBytesRead();
+	}
+
+	public void close() throws IOException {
+		reader.close();
+	}
+}
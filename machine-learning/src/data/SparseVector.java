@@ -0,0 +1,220 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * Compact sparse vector: parallel arrays of dimensions (sorted in
+ * increasing order) and their values. Dimensions that are not stored
+ * have value zero. Iterate over the non-zero entries like this:
+ *
+ * for(int i = 0; i < vector.size(); i++) {
+ *   int dimension = vector.getIndex(i);
+ *   float value = vector.getValue(i);
+ * }
+ */
+public class SparseVector {
+
+	private static final int defaultCapacity = 8;
+
+	// dimensions sorted in increasing order
+	private int[] indices;
+	// values of the dimensions above
+	private float[] values;
+	// number of non-zero entries
+	private int size;
+
+	public SparseVector() {
+		this(defaultCapacity);
+	}
+
+	public SparseVector(int capacity) {
+		indices = new int[capacity];
+		values = new float[capacity];
+		size = 0;
+	}
+
+	/**
+	 * Create from a pair of arrays. The dimensions must be sorted
+	 * in increasing order. The arrays are not copied.
+	 */
+	public SparseVector(int[] indices, float[] values) {
+		this.indices = indices;
+		this.values = values;
+		this.size = indices.length;
+	}
+
+	/**
+	 * Create from the first n elements of a pair of arrays in which 
+	 * the dimensions are unique but not necessarily sorted. 
+	 */
+	public static SparseVector fromUnsorted(int[] indices, float[] values, int n) {
+		boolean sorted = true;
+		for(int i = 1; i < n; i++) {
+			if(indices[i - 1] > indices[i]) {
+				sorted = false;
+				break;
+			}
+		}
+		if(sorted) {
+			return new SparseVector(Arrays.copyOf(indices, n), Arrays.copyOf(values, n));
+		}
+
+		// pack each dimension with its value so that a single sort orders both
+		long[] packed = new long[n];
+		for(int i = 0; i < n; i++) {
+			packed[i] = ((long) indices[i] << 32) | (Float.floatToRawIntBits(values[i]) & 0xffffffffL);
+		}
+		Arrays.sort(packed);
+
+		int[] sortedIndices = new int[n];
+		float[] sortedValues = new float[n];
+		for(int i = 0; i < n; i++) {
+			sortedIndices[i] = (int) (packed[i] >>> 32);
+			sortedValues[i] = Float.intBitsToFloat((int) packed[i]);
+		}
+		return new SparseVector(sortedIndices, sortedValues);
+	}
+
+	/**
+	 * Create a copy of another vector.
+	 */
+	public SparseVector(SparseVector source) {
+		indices = Arrays.copyOf(source.indices, source.size);
+		values = Arrays.copyOf(source.values, source.size);
+		size = source.size;
+	}
+
+	/**
+	 * Number of non-zero entries.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Dimension of the i-th non-zero entry.
+	 */
+	public int getIndex(int i) {
+		return indices[i];
+	}
+
+	/**
+	 * Value of the i-th non-zero entry.
+	 */
+	public float getValue(int i) {
+		return values[i];
+	}
+
+	/**
+	 * Position of a dimension in the arrays of non-zero entries
+	 * or a negative number if the dimension is not stored.
+	 */
+	public int find(int dimension) {
+		return Arrays.binarySearch(indices, 0, size, dimension);
+	}
+
+	public boolean contains(int dimension) {
+		return find(dimension) >= 0;
+	}
+
+	/**
+	 * Value of a dimension (zero if the dimension is not stored).
+	 */
+	public float get(int dimension) {
+		int position = find(dimension);
+		return position < 0 ? 0 : values[position];
+	}
+
+	/**
+	 * Set the value of a dimension. Appending dimensions in
+	 * increasing order is the cheap case; otherwise the value
+	 * is inserted at its sorted position.
+	 */
+	public void set(int dimension, float value) {
+		if(size == 0 || indices[size - 1] < dimension) {
+			ensureCapacity(size + 1);
+			indices[size] = dimension;
+			values[size] = value;
+			size++;
+			return;
+		}
+
+		int position = find(dimension);
+		if(position >= 0) {
+			values[position] = value;
+			return;
+		}
+
+		int insertAt = -(position + 1);
+		ensureCapacity(size + 1);
+		System.arraycopy(indices, insertAt, indices, insertAt + 1, size - insertAt);
+		System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+		indices[insertAt] = dimension;
+		values[insertAt] = value;
+		size++;
+	}
+
+	/**
+	 * Dot product with another sparse vector.
+	 */
+	public double dot(SparseVector other) {
+		double sum = 0;
+		int i = 0;
+		int j = 0;
+		while(i < size && j < other.size) {
+			if(indices[i] == other.indices[j]) {
+				sum += values[i] * other.values[j];
+				i++;
+				j++;
+			} else if(indices[i] < other.indices[j]) {
+				i++;
+			} else {
+				j++;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Dot product with a dense vector. Dimensions that
+	 * fall outside of the dense vector are ignored.
+	 */
+	public double dot(double[] dense) {
+		double sum = 0;
+		for(int i = 0; i < size; i++) {
+			if(indices[i] < dense.length) {
+				sum += values[i] * dense[indices[i]];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Sum up the values of all entries.
+	 */
+	public float sum() {
+		float sum = 0;
+		for(int i = 0; i < size; i++) {
+			sum += values[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Release unused capacity.
+	 */
+	public void trim() {
+		if(indices.length != size) {
+			indices = Arrays.copyOf(indices, size);
+			values = Arrays.copyOf(values, size);
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if(indices.length < capacity) {
+			int newCapacity = Math.max(capacity, indices.length * 2);
+			indices = Arrays.copyOf(indices, newCapacity);
+			values = Arrays.copyOf(values, newCapacity);
+		}
+	}
+}
@@ -6,6 +6,9 @@ public class Split {
 	
 	private Dataset trainSet;
 	private Dataset testSet;
+	// positions of the train and test instances in the dataset that was split
+	private int[] poolRows;
+	private int[] testRows;
 	
 	public Split() {
 		trainSet = new Dataset();
@@ -21,6 +24,19 @@ public class Split {
 		testSet = new Dataset(testInstances);
 	}
 	
+	/**
+	 * Construct from the positions of the train and test instances in a dataset.
+	 * No instances are copied: the train and test sets are views of the dataset
+	 * (see Dataset.view()).
+	 */
+	public Split(Dataset dataset, int[] poolRows, int[] testRows) {
+		
+		this.poolRows = poolRows;
+		this.testRows = testRows;
+		trainSet = dataset.view(poolRows);
+		testSet = dataset.view(testRows);
+	}
+	
 	public Dataset getPoolSet() {
 	  return trainSet;
   }
@@ -36,4 +52,16 @@ public class Split {
 	public void setTestSet(Dataset testSet) {
 	  this.testSet = testSet;
   }
+	
+	/**
+	 * Positions of the train instances in the dataset that was split
+	 * (null if the split was not made from a dataset).
+	 */
+	public int[] getPoolRows() {
+		return poolRows;
+	}
+	
+	public int[] getTestRows() {
+		return testRows;
+	}
 }
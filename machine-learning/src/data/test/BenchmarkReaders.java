@@ -0,0 +1,131 @@
+package data.test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+import java.util.Scanner;
+
+import data.ByteInterner;
+import data.ByteLineReader;
+import data.Dataset;
+import data.Instance;
+
+/**
+ * Measure the throughput (MB/s) of loading a comma-separated file 
+ * the old way (Scanner and String.split) and with ByteLineReader.
+ * Usage: BenchmarkReaders [file size in MB]
+ */
+public class BenchmarkReaders {
+
+	public static final int NUMFEATURES = 50000;
+	public static final int FEATURESPERINSTANCE = 100;
+
+	public static void main(String[] args) throws IOException {
+
+		int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+		File file = File.createTempFile("benchmark", ".csv");
+		file.deleteOnExit();
+		writeFile(file, megabytes);
+		double size = file.length() / (1024.0 * 1024.0);
+
+		// the first pass warms up the jvm and the file system cache
+		for(int pass = 0; pass < 2; pass++) {
+			long start = System.nanoTime();
+			Dataset oldDataset = loadTheOldWay(file.getPath());
+			double oldSeconds = (System.nanoTime() - start) / 1e9;
+
+			start = System.nanoTime();
+			Dataset newDataset = new Dataset();
+			newDataset.loadCSVFile(file.getPath());
+			double newSeconds = (System.nanoTime() - start) / 1e9;
+
+			start = System.nanoTime();
+			long tokens = tokenize(file.getPath());
+			double tokenizerSeconds = (System.nanoTime() - start) / 1e9;
+
+			System.out.format("%.1f MB, %d instances, %d tokens, same instances: %b\n", 
+					size, newDataset.size(), tokens, same(oldDataset, newDataset));
+			System.out.format("scanner and split: %.1f MB/s\n", size / oldSeconds);
+			System.out.format("csv reader: %.1f MB/s\n", size / newSeconds);
+			System.out.format("tokenizer only: %.1f MB/s\n", size / tokenizerSeconds);
+		}
+	}
+
+	private static void writeFile(File file, int megabytes) throws IOException {
+
+		Random random = new Random(100);
+		BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+		while(file.length() < megabytes * 1024L * 1024L) {
+			for(int line = 0; line < 1000; line++) {
+				StringBuilder builder = new StringBuilder(random.nextBoolean() ? "yes" : "no");
+				for(int feature = 0; feature < FEATURESPERINSTANCE; feature++) {
+					float value = random.nextBoolean() ? 1 + random.nextInt(5) : random.nextFloat();
+					builder.append(",C").append(random.nextInt(NUMFEATURES)).append(':').append(value);
+				}
+				writer.write(builder.append('\n').toString());
+			}
+			writer.flush();
+		}
+		writer.close();
+	}
+
+	/**
+	 * Dataset.loadCSVFile() before it used ByteLineReader.
+	 */
+	private static Dataset loadTheOldWay(String inputFile) throws IOException {
+
+		Dataset dataset = new Dataset();
+		Scanner scan = new Scanner(new File(inputFile));
+		while(scan.hasNextLine()) {
+			String line = scan.nextLine();
+			String[] elements = line.split(",");
+			Instance instance = new Instance();
+			instance.setLabel(elements[0]);
+			for(int i = 1; i < elements.length; i++) {
+				String[] pair = elements[i].split(":");
+				instance.addFeature(pair[0], Float.parseFloat(pair[1]));
+			}
+			dataset.add(instance);
+		}
+		scan.close();
+		return dataset;
+	}
+
+	/**
+	 * Read all tokens without making instances.
+	 */
+	private static long tokenize(String inputFile) throws IOException {
+
+		ByteLineReader reader = new ByteLineReader(inputFile);
+		ByteInterner interner = new ByteInterner();
+		long tokens = 0;
+		double sum = 0;
+		while(reader.nextLine()) {
+			reader.skip((byte) ',');
+			while(reader.hasNext()) {
+				tokens += reader.nextIndex((byte) ':', interner) >= 0 ? 1 : 0;
+				sum += reader.nextFloat((byte) ',');
+			}
+		}
+		reader.close();
+		return sum > 0 ? tokens : -1;
+	}
+
+	private static boolean same(Dataset dataset1, Dataset dataset2) {
+
+		if(dataset1.size() != dataset2.size()) {
+			return false;
+		}
+		for(int i = 0; i < dataset1.size(); i++) {
+			Instance instance1 = dataset1.getInstance(i);
+			Instance instance2 = dataset2.getInstance(i);
+			if(! instance1.getLabel().equals(instance2.getLabel()) || 
+					! instance1.getFeatures().equals(instance2.getFeatures())) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,31 @@
+package data.test;
+
+import java.util.Random;
+
+import data.Dataset;
+import data.Instance;
+
+/**
+ * Random datasets for the tests. Alphabets and vectors are not made.
+ */
+public class SyntheticData {
+
+	/**
+	 * Make size instances, each with a random label and numFeatures features
+	 * drawn uniformly from "w0".."w<vocabulary - 1>" with values 1..maxValue
+	 * (a feature drawn twice keeps the last value).
+	 */
+	public static Dataset makeDataset(Random random, int size, String[] labels, int vocabulary, int numFeatures, int maxValue) {
+
+		Dataset dataset = new Dataset();
+		for(int i = 0; i < size; i++) {
+			Instance instance = new Instance();
+			instance.setLabel(labels[random.nextInt(labels.length)]);
+			for(int j = 0; j < numFeatures; j++) {
+				instance.addFeature("w" + random.nextInt(vocabulary), 1 + random.nextInt(maxValue));
+			}
+			dataset.add(instance);
+		}
+		return dataset;
+	}
+}
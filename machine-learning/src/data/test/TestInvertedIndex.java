@@ -0,0 +1,90 @@
+package data.test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+
+import data.Dataset;
+import data.InvertedIndex;
+import data.SparseVector;
+
+/**
+ * Compare the inverted index and the document frequencies with the vectors,
+ * and check that the index is rebuilt after the dataset is modified.
+ */
+public class TestInvertedIndex {
+
+	public static void main(String[] args) {
+
+		Dataset dataset = makeDataset();
+		dataset.makeAlphabets();
+		dataset.makeVectors();
+
+		boolean passed = check(dataset);
+
+		InvertedIndex index = dataset.getInvertedIndex();
+		passed = passed && dataset.getInvertedIndex() == index;
+		dataset.removeInstance(0);
+		passed = passed && dataset.getInvertedIndex() != index && check(dataset);
+
+		// keep the features that occur in 30 to 50 documents
+		dataset.discardFeatures(30, 50);
+		dataset.makeVectors();
+		int[] documentFrequencies = dataset.getInvertedIndex().getDocumentFrequencies();
+		for(int documentFrequency : documentFrequencies) {
+			passed = passed && (documentFrequency == 0 || (documentFrequency >= 30 && documentFrequency <= 50));
+		}
+		passed = passed && check(dataset);
+
+		// without alphabets and with an alphabet that lacks some of the features,
+		// the document frequencies are counted over the features of the instances
+		Dataset withoutAlphabets = makeDataset();
+		withoutAlphabets.removeInstance(0);
+		withoutAlphabets.discardFeatures(30, 50);
+		Dataset staleAlphabets = makeDataset();
+		staleAlphabets.removeInstance(0);
+		Dataset subset = Dataset.viewOf(staleAlphabets.getInstances().subList(0, 10));
+		subset.makeAlphabets();
+		staleAlphabets.setAlphabets(subset.getLabelAlphabet(), subset.getFeatureAlphabet());
+		staleAlphabets.discardFeatures(30, 50);
+		for(int row = 0; row < dataset.size(); row++) {
+			Set<String> features = dataset.getInstance(row).getFeatures().keySet();
+			passed = passed && features.equals(withoutAlphabets.getInstance(row).getFeatures().keySet());
+			passed = passed && features.equals(staleAlphabets.getInstance(row).getFeatures().keySet());
+		}
+
+		System.out.println(passed ? "passed" : "failed");
+	}
+
+	private static Dataset makeDataset() {
+
+		return SyntheticData.makeDataset(new Random(0), 1000, new String[] {"yes"}, 500, 20, 3);
+	}
+
+	/**
+	 * Check that each vector entry is in the index and that the index has no other entries.
+	 */
+	private static boolean check(Dataset dataset) {
+
+		InvertedIndex index = dataset.getInvertedIndex();
+		long entries = 0;
+		for(int row = 0; row < dataset.size(); row++) {
+			SparseVector vector = dataset.getInstance(row).getVector();
+			for(int i = 0; i < vector.size(); i++) {
+				int[] rows = index.getRows(vector.getIndex(i));
+				int position = Arrays.binarySearch(rows, row);
+				if(position < 0 || index.getValues(vector.getIndex(i))[position] != vector.getValue(i)) {
+					return false;
+				}
+				entries++;
+			}
+		}
+
+		long postings = 0;
+		for(int feature = 0; feature < index.getNumberOfDimensions(); feature++) {
+			postings += index.getDocumentFrequency(feature);
+		}
+
+		return postings == entries && index.getNumberOfRows() == dataset.size();
+	}
+}
@@ -0,0 +1,53 @@
+package data.test;
+
+import java.util.Random;
+
+import com.google.common.base.Charsets;
+
+import data.ByteLineReader;
+
+/**
+ * Compare ByteLineReader.parseFloat() against Float.parseFloat().
+ */
+public class TestParseFloat {
+
+	public static final int TRIALS = 1000000;
+
+	public static void main(String[] args) {
+
+		String[] special = {"0", "-0", "0.0", "1", "-1", "3.0", "0.5", ".5", "5.", "1e3", "1E-3", "+2", 
+				"1.17549435E-38", "1.4E-45", "3.4028235E38", "3.5E38", "1e-50", "0.1", "0.30000001192092896", 
+				"16777217", "123456789012345678901234567890", "NaN", "-Infinity", " 7 "};
+
+		int mismatches = 0;
+		for(String string : special) {
+			mismatches += compare(string);
+		}
+
+		Random random = new Random(100);
+		for(int trial = 0; trial < TRIALS; trial++) {
+			String string;
+			switch(random.nextInt(4)) {
+			case 0: string = Integer.toString(random.nextInt(1000)); break;
+			case 1: string = Float.toString(random.nextFloat() * 100); break;
+			case 2: string = Double.toString(random.nextGaussian()); break;
+			default: string = String.format("%.6f", random.nextDouble() * random.nextInt(1000000));
+			}
+			mismatches += compare(string);
+		}
+
+		System.out.println(mismatches == 0 ? "passed" : "failed: " + mismatches + " mismatches");
+	}
+
+	private static int compare(String string) {
+
+		byte[] bytes = string.getBytes(Charsets.UTF_8);
+		float expected = Float.parseFloat(string);
+		float actual = ByteLineReader.parseFloat(bytes, 0, bytes.length);
+		if(Float.floatToIntBits(expected) != Float.floatToIntBits(actual)) {
+			System.out.println(string + ": expected " + expected + " but got " + actual);
+			return 1;
+		}
+		return 0;
+	}
+}
@@ -4,6 +4,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 
 import semsup.eval.Constants;
+import semsup.eval.Scheduler;
 
 public class Evaluate {
 
@@ -15,9 +16,8 @@ public class Evaluate {
       Constants.populate(args[0], true);  
     }
 
-    for(String phenotype : Constants.phenotypes) {
-      EvaluatePhenotype evaluate = new EvaluatePhenotype(phenotype);
-      evaluate.start();
-    }
+    // all phenotypes share one pool; finished cells are skipped on restart
+    Scheduler scheduler = new Scheduler(Constants.resultFile, Constants.schedulerThreads);
+    scheduler.run();
   }
 }
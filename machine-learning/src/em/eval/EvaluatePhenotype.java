@@ -1,29 +1,47 @@
 package em.eval;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.math3.stat.StatUtils;
 
 import semsup.eval.Configuration;
 import semsup.eval.Constants;
 import semsup.eval.Evaluation;
+import utils.Parallel;
 
 import com.google.common.base.Charsets;
 import com.google.common.io.Files;
 
+import cv.FoldResults;
+import cv.FoldRunner;
 import data.Alphabet;
 import data.Dataset;
+import data.DatasetRegistry;
 import data.I2b2Dataset;
 import data.Split;
 import em.implementation.EmAlgorithm;
+import em.implementation.EmModel;
+import em.implementation.EmResult;
+import em.implementation.EmStatistics;
 
 public class EvaluatePhenotype extends Thread {
 
+  // runs the grid search tasks of all instances
+  private static ExecutorService gridSearchPool;
+
   public String phenotype;
+  // for warm start: the last em model of each unlabeled size and fold
+  private Map<String, EmModel> previousModels = new ConcurrentHashMap<String, EmModel>();
+  // iterations and time of all em runs
+  private EmStatistics statistics = new EmStatistics();
 
   public EvaluatePhenotype(String phenotype) {
     this.phenotype = phenotype;
@@ -37,24 +55,25 @@ public class EvaluatePhenotype extends Thread {
       file.delete();
     }
 
-    double stdErrDenominator = Math.sqrt(Constants.folds);    
     for(int labeled = Constants.step; labeled < Constants.maxLabeled; labeled += Constants.step) {
       // configurations with varying number of unlabeled examples for a fixed number of labeled examples 
       List<Configuration> configurations = Configuration.createConfigurations(phenotype, labeled);
       StringBuilder output = new StringBuilder();
       output.append(String.format("%-3d ", labeled));
       for(Configuration configuration : configurations) {
-        double accuracy;
-        double stdErr;
+        FoldResults results;
         if(configuration.numUnlabeled == 0) {
-          double[] foldAccuracy = Evaluation.evaluateBaseline(configuration);
-          accuracy = StatUtils.mean(foldAccuracy);
-          stdErr = Math.sqrt(StatUtils.variance(foldAccuracy)) / stdErrDenominator;
+          results = Evaluation.evaluateBaseline(configuration);
         } else {
-          double[] foldAccuracy = evaluate(configuration);
-          accuracy = StatUtils.mean(foldAccuracy);
-          stdErr = Math.sqrt(StatUtils.variance(foldAccuracy)) / stdErrDenominator;
+          try {
+            results = evaluate(configuration);
+          } catch (IOException e) {
+            System.err.println("could not load data: " + configuration.dataPath);
+            return;
+          }
         }
+        double accuracy = results.getMean();
+        double stdErr = results.getStandardError();
         output.append(String.format("%.4f %.4f ", accuracy, stdErr));
       }
       try {
@@ -63,77 +82,110 @@ public class EvaluatePhenotype extends Thread {
         System.err.println("could not write output file!");
       }
     }
+    System.out.println(phenotype + ": " + statistics.report());
   }
 
   /**
    * Evaluate a configuration. Return n-fold CV accuracy.
    */
-  public double[] evaluate(Configuration configuration) {
-
-    I2b2Dataset dataset = new I2b2Dataset();
-    I2b2Dataset unlabeled = new I2b2Dataset();
-    try {
-      dataset.loadCSVFile(configuration.dataPath, configuration.labelPath);
-      unlabeled.loadFromCSVFile(configuration.dataPath, configuration.labelPath, configuration.numUnlabeled);
-    } catch (FileNotFoundException e) {
-      System.err.println("data file not found!");
-    }
-    if(configuration.sourceLabels != null) {
-      // no need to remap unlabeled since there are no labels
-      dataset.mapLabels(configuration.sourceLabels, configuration.targetLabel);
-    }
-    // make alphabets now, after labels were potentially remapped 
-    dataset.makeAlphabets();
-
-    Split[] splits = dataset.split(Constants.folds);
-    double[] foldAccuracy = new double[Constants.folds];
-
-    for(int fold = 0; fold < Constants.folds; fold++) {
-      Dataset labeled = new Dataset();
-      Dataset nontest = splits[fold].getPoolSet();
-      Dataset test = splits[fold].getTestSet();
-      labeled.add(nontest.popRandom(configuration.numLabeled, new Random(Constants.rndSeed)));
-
-      double lambda;
-      if(Constants.gridSearch) {
-        lambda = findBestLambda(labeled, unlabeled, dataset.getLabelAlphabet(), dataset.getFeatureAlphabet());
-      } else {
-        lambda = Constants.defaultLambda;
+  public FoldResults evaluate(Configuration configuration) throws IOException {
+
+    // the files are read once and shared by all configurations and threads;
+    // no need to remap unlabeled since there are no labels
+    I2b2Dataset dataset = Evaluation.loadLabeled(configuration);
+    I2b2Dataset unlabeled = DatasetRegistry.getUnlabeled(configuration.dataPath, configuration.labelPath, configuration.numUnlabeled);
+
+    final I2b2Dataset data = dataset;
+    final I2b2Dataset unlabeledData = unlabeled;
+    final Split[] splits = dataset.split(Constants.folds);
+    final Configuration config = configuration;
+
+    FoldRunner runner = new FoldRunner(Constants.foldThreads, Constants.rndSeed);
+    return runner.run(Constants.folds, new FoldRunner.FoldTask() {
+      public double run(int fold, Random random) {
+        // em labels the unlabeled instances; each fold labels its own copies
+        Dataset unlabeled = Dataset.viewOf(unlabeledData.getInstances());
+        return evaluateFold(data, unlabeled, splits[fold], fold, config);
       }
+    });
+  }
+
+  /**
+   * Run em using configuration.numLabeled examples from the pool set of a split
+   * and the unlabeled examples. Return its accuracy on the test set of the split.
+   * The class probabilities of the unlabeled instances are modified.
+   * 
+   * With warm start, em starts from the model of the previous call for the same
+   * fold and number of unlabeled examples. Labeled examples are drawn with the
+   * same seed, so that model was trained on a subset of the labeled examples.
+   */
+  public double evaluateFold(I2b2Dataset dataset, Dataset unlabeled, Split split, int fold, Configuration configuration) {
+
+    Dataset labeled = new Dataset();
+    Dataset nontest = split.getPoolSet();
+    Dataset test = split.getTestSet();
+    labeled.add(nontest.popRandom(configuration.numLabeled, new Random(Constants.rndSeed)));
 
-      foldAccuracy[fold] = EmAlgorithm.runAndEvaluate(
-          labeled, 
-          unlabeled,
-          test, 
-          dataset.getLabelAlphabet(), 
-          dataset.getFeatureAlphabet(),
-          configuration.numIterations,
-          lambda);
+    double lambda;
+    if(Constants.gridSearch) {
+      lambda = findBestLambda(labeled, unlabeled, dataset.getLabelAlphabet(), dataset.getFeatureAlphabet());
+    } else {
+      lambda = Constants.defaultLambda;
     }
 
-    return foldAccuracy;
+    String key = configuration.numUnlabeled + " " + fold;
+    EmModel initial = Constants.warmStart ? previousModels.get(key) : null;
+    EmResult result = EmAlgorithm.run(
+        labeled, 
+        unlabeled,
+        test, 
+        dataset.getLabelAlphabet(), 
+        dataset.getFeatureAlphabet(),
+        initial,
+        configuration.numIterations,
+        Constants.tolerance,
+        Constants.patience,
+        lambda,
+        Constants.emThreads);
+    if(Constants.warmStart) {
+      previousModels.put(key, result.model);
+    }
+    statistics.add(result, configuration.numIterations, initial != null);
+
+    return result.accuracy;
+  }
+
+  public EmStatistics getStatistics() {
+    return statistics;
   }
 
   /**
    * Search for best lambda using labeled training data.
    * Begin with lambda = 0 (i.e. unlabeled data has zero weight). 
    * New value of lambda is returned if its performance is higher than a threshold.
+   * All values of lambda are evaluated at once (see evaluateLambdas()), but the 
+   * selection is done in the order of the values, so it is the same as if they 
+   * were evaluated one after another.
    */
   public double findBestLambda(Dataset labeled, Dataset unlabeled, Alphabet labelAlphabet, Alphabet featureAlphabet) {
 
     // unlabeled data has no effect by default
-    double bestLambda = 0; 
-    double[] baseFoldAccuracy = evaluateLambda(labeled, unlabeled, labelAlphabet, featureAlphabet, bestLambda);
-    double bestAccuracy = StatUtils.mean(baseFoldAccuracy);
+    double[] lambdas = new double[Constants.lambdas.size() + 1];
+    for(int i = 1; i < lambdas.length; i++) {
+      lambdas[i] = Constants.lambdas.get(i - 1);
+    }
+    double[][] foldAccuracy = evaluateLambdas(labeled, unlabeled, labelAlphabet, featureAlphabet, lambdas);
+
+    double bestLambda = lambdas[0]; 
+    double bestAccuracy = StatUtils.mean(foldAccuracy[0]);
 
     // now try the other values and see if they differ enough
-    for(double lambda : Constants.lambdas) {
-      double[] foldAccuracy = evaluateLambda(labeled, unlabeled, labelAlphabet, featureAlphabet, lambda);
-      double accuracy = StatUtils.mean(foldAccuracy);
-      double threshold = Constants.conservativeSearch ? StatUtils.variance(foldAccuracy) : 0;
+    for(int i = 1; i < lambdas.length; i++) {
+      double accuracy = StatUtils.mean(foldAccuracy[i]);
+      double threshold = Constants.conservativeSearch ? StatUtils.variance(foldAccuracy[i]) : 0;
       if(accuracy - bestAccuracy > threshold) {
         bestAccuracy = accuracy;
-        bestLambda = lambda;
+        bestLambda = lambdas[i];
       }
     }
 
@@ -146,20 +198,81 @@ public class EvaluatePhenotype extends Thread {
    */
   public double[] evaluateLambda(Dataset labeled, Dataset unlabeled, Alphabet labelAlphabet, Alphabet featureAlphabet, double lambda) {
 
-    Split[] splits = labeled.split(Constants.devFolds);
-    double[] foldAccuracy = new double[Constants.devFolds];
-    
-    for(int fold = 0; fold < Constants.devFolds; fold++) {      
-      foldAccuracy[fold] = EmAlgorithm.runAndEvaluate(
-          splits[fold].getPoolSet(), 
-          unlabeled,
-          splits[fold].getTestSet(), 
-          labelAlphabet,
-          featureAlphabet,
-          Constants.devIterations,
-          lambda);
+    return evaluateLambdas(labeled, unlabeled, labelAlphabet, featureAlphabet, new double[] {lambda})[0];
+  }
+
+  /**
+   * Evaluate several values of lambda using n-fold CV on the labeled data. 
+   * Return the performance of each fold for each value of lambda.
+   * 
+   * Each (lambda, fold) pair is a separate task; the tasks run on the grid 
+   * search pool if Constants.gridThreads > 1. The vectors of the labeled and
+   * unlabeled instances are made once and then only read. Each task has its own 
+   * views of the instances, so that the class probabilities that em sets are
+   * not shared. Em starts by training on the labeled data and labels all 
+   * unlabeled instances before using them, so the tasks do not affect each other.
+   */
+  public double[][] evaluateLambdas(
+      final Dataset labeled, 
+      final Dataset unlabeled, 
+      final Alphabet labelAlphabet, 
+      final Alphabet featureAlphabet, 
+      final double[] lambdas) {
+
+    labeled.setAlphabets(labelAlphabet, featureAlphabet);
+    labeled.makeVectors();
+    unlabeled.setAlphabets(labelAlphabet, featureAlphabet);
+    unlabeled.makeVectors();
+
+    final Split[] splits = labeled.split(Constants.devFolds);
+    final double[][] foldAccuracy = new double[lambdas.length][Constants.devFolds];
+
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for(int i = 0; i < lambdas.length; i++) {
+      for(int fold = 0; fold < Constants.devFolds; fold++) {
+        final int lambdaIndex = i;
+        final int devFold = fold;
+        tasks.add(new Callable<Void>() {
+          public Void call() {
+            foldAccuracy[lambdaIndex][devFold] = EmAlgorithm.runAndEvaluate(
+                labeled.view(splits[devFold].getPoolRows()), 
+                Dataset.viewOf(unlabeled.getInstances()),
+                labeled.view(splits[devFold].getTestRows()), 
+                labelAlphabet,
+                featureAlphabet,
+                Constants.devIterations,
+                lambdas[lambdaIndex],
+                Constants.emThreads);
+            return null;
+          }
+        });
+      }
+    }
+
+    if(Constants.gridThreads > 1) {
+      Parallel.invokeAll(getGridSearchPool(), tasks);
+    } else {
+      for(Callable<Void> task : tasks) {
+        try {
+          task.call();
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
     }
 
     return foldAccuracy;
   }
+
+  /**
+   * Pool shared by the grid searches of all phenotypes and folds.
+   * Its threads are daemon threads, so it is never shut down.
+   */
+  private static synchronized ExecutorService getGridSearchPool() {
+
+    if(gridSearchPool == null) {
+      gridSearchPool = Parallel.newPool(Constants.gridThreads);
+    }
+    return gridSearchPool;
+  }
 }
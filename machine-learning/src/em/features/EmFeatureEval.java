@@ -1,7 +1,6 @@
 package em.features;
 
 import java.io.IOException;
-import java.util.HashSet;
 import java.util.Random;
 
 import semsup.eval.Constants;
@@ -71,7 +70,7 @@ public class EmFeatureEval {
                           int iterations,
                           double lambda) {
 
-    labeled.setInstanceClassProbabilityDistribution(new HashSet<String>(labelAlphabet.getStrings()));
+    labeled.setInstanceClassProbabilityDistribution(labelAlphabet);
     labeled.setAlphabets(labelAlphabet, featureAlphabet);
     labeled.makeVectors();
 
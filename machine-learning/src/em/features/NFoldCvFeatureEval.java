@@ -3,9 +3,9 @@ package em.features;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import semsup.eval.Constants;
 import utils.UmlsLookup;
@@ -14,6 +14,8 @@ import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.collect.Ordering;
 
+import cv.FoldResults;
+import cv.FoldRunner;
 import data.Alphabet;
 import data.Dataset;
 import data.I2b2Dataset;
@@ -39,30 +41,39 @@ public class NFoldCvFeatureEval {
     dataset.mapLabels(Constants.t2dSourceLabels, Constants.t2dTargetLabel);
     dataset.makeAlphabets();
 
-    Split[] splits = dataset.split(FOLDS);
-    double cumulAcc = 0;
+    final I2b2Dataset data = dataset;
+    final Split[] splits = dataset.split(FOLDS);
+    final EmModel[] classifiers = new EmModel[ACTUALFOLDSTORUN];
+
+    FoldRunner runner = new FoldRunner(Constants.foldThreads, Constants.rndSeed);
+    FoldResults results = runner.run(ACTUALFOLDSTORUN, new FoldRunner.FoldTask() {
+      public double run(int fold, Random random) {
+        Dataset trainSet = splits[fold].getPoolSet();
+        Dataset testSet = splits[fold].getTestSet();
+
+        trainSet.makeAlphabets();
+        trainSet.makeVectors();
+        testSet.setAlphabets(trainSet.getLabelAlphabet(), trainSet.getFeatureAlphabet());
+        testSet.makeVectors();
+
+        trainSet.setInstanceClassProbabilityDistribution(data.getLabelAlphabet());
+        EmModel classifier = new EmModel(data.getLabelAlphabet(), 1.0);
+        classifier.train(trainSet);
+        classifiers[fold] = classifier;
+        return classifier.test(testSet);
+      }
+    });
 
-    // run just one fold and look at feature weights
+    // look at feature weights (in fold order, after all folds finished)
     for(int fold = 0; fold < ACTUALFOLDSTORUN; fold++) {
-      Dataset trainSet = splits[fold].getPoolSet();
-      Dataset testSet = splits[fold].getTestSet();
-
-      trainSet.makeAlphabets();
-      trainSet.makeVectors();
-      testSet.setAlphabets(trainSet.getLabelAlphabet(), trainSet.getFeatureAlphabet());
-      testSet.makeVectors();
-
-      trainSet.setInstanceClassProbabilityDistribution(new HashSet<String>(dataset.getLabelAlphabet().getStrings()));
-      EmModel classifier = new EmModel(dataset.getLabelAlphabet(), 1.0);
-      classifier.train(trainSet);
-      double accuracy = classifier.test(testSet);
-      cumulAcc = cumulAcc + accuracy;
-
-      displayFeatureWeights(classifier, dataset.getFeatureAlphabet(), FEATURESTOPRINT);
+      if(results.failed(fold)) {
+        continue;
+      }
+      displayFeatureWeights(classifiers[fold], dataset.getFeatureAlphabet(), FEATURESTOPRINT);
       System.out.println();
     }
 
-    System.out.format("accuracy: %.4f\n", cumulAcc / ACTUALFOLDSTORUN);
+    System.out.format("accuracy: %.4f\n", results.getMean());
   }
 
   /**
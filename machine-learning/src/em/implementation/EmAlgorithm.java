@@ -1,45 +1,158 @@
 package em.implementation;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
+import utils.Parallel;
 import data.Alphabet;
 import data.Dataset;
+import data.Instance;
 
 public class EmAlgorithm {
 
+  // tasks per thread; more tasks than threads evens out the load
+  public static final int tasksPerThread = 4;
+
   public static double runAndEvaluate(
-                          Dataset labeled, 
-                          Dataset unlabeled, 
-                          Dataset test, 
-                          Alphabet labelAlphabet, 
+                          Dataset labeled,
+                          Dataset unlabeled,
+                          Dataset test,
+                          Alphabet labelAlphabet,
                           Alphabet featureAlphabet,
                           int iterations,
                           double lambda) {
-    
-    labeled.setInstanceClassProbabilityDistribution(new HashSet<String>(labelAlphabet.getStrings()));
+
+    return runAndEvaluate(labeled, unlabeled, test, labelAlphabet, featureAlphabet, iterations, lambda, 1);
+  }
+
+  /**
+   * Same as above, but run the E-step and the M-step using the specified
+   * number of threads. The result is identical to the single-threaded one.
+   */
+  public static double runAndEvaluate(
+                          Dataset labeled,
+                          Dataset unlabeled,
+                          Dataset test,
+                          Alphabet labelAlphabet,
+                          Alphabet featureAlphabet,
+                          int iterations,
+                          double lambda,
+                          int parallelism) {
+
+    EmResult result = run(labeled, unlabeled, test, labelAlphabet, featureAlphabet, null, iterations, 0, 1, lambda, parallelism);
+    return result.accuracy;
+  }
+
+  /**
+   * Run em and evaluate the final model on the test set.
+   * 
+   * If initial is not null, em starts from a copy of its parameters (warm start),
+   * e.g. from the model that em converged to with fewer labeled examples.
+   * Otherwise em starts from a model trained on the labeled data.
+   * 
+   * The E-step computes the data log-likelihood of the current model as a
+   * by-product. Em stops when the relative change of the log-likelihood from
+   * one iteration to the next is at most tolerance in patience (at least 1)
+   * consecutive iterations, or after maxIterations. With tolerance 0 exactly
+   * maxIterations iterations are run. The log-likelihood, time, and throughput
+   * of each iteration are returned in result.trace.
+   */
+  public static EmResult run(
+                          Dataset labeled,
+                          Dataset unlabeled,
+                          Dataset test,
+                          Alphabet labelAlphabet,
+                          Alphabet featureAlphabet,
+                          EmModel initial,
+                          int maxIterations,
+                          double tolerance,
+                          int patience,
+                          double lambda,
+                          int parallelism) {
+
+    long start = System.currentTimeMillis();
+    EmResult result = new EmResult();
+    result.logLikelihood = Double.NaN;
+    result.trace = new EmTrace();
+
+    labeled.setInstanceClassProbabilityDistribution(labelAlphabet);
     labeled.setAlphabets(labelAlphabet, featureAlphabet);
     labeled.makeVectors();
 
+    ExecutorService executor = null;
     EmModel em = new EmModel(labelAlphabet, lambda);
-    em.train(labeled);
-    
-    for(int iteration = 0; iteration < iterations; iteration++) {
-      // E-step
+    if(parallelism > 1) {
+      executor = Parallel.newPool(parallelism);
+      em.setExecutor(executor, parallelism * tasksPerThread);
+    }
+
+    try {
+      if(initial == null) {
+        em.train(labeled);
+      } else {
+        em.initialize(initial);
+      }
+
+      // unlabeled instances only need to be vectorized once
       unlabeled.setAlphabets(labelAlphabet, featureAlphabet);
       unlabeled.makeVectors();
-      em.label(unlabeled);
 
-      // M-step
-      Dataset labeledPlusUnlabeled = new Dataset(labeled.getInstances(), unlabeled.getInstances());
-      labeledPlusUnlabeled.setAlphabets(labelAlphabet, featureAlphabet);
-      labeledPlusUnlabeled.makeVectors();
-      em.train(labeledPlusUnlabeled);
+      int numInstances = labeled.size() + unlabeled.size();
+      int stableIterations = 0;
+      while(result.iterations < maxIterations) {
+        long iterationStart = System.nanoTime();
+
+        // E-step; the log-likelihood of the current model comes with it
+        double previous = result.logLikelihood;
+        result.logLikelihood = lambda * em.label(unlabeled) + em.getLabeledLogLikelihood(labeled);
+        if(tolerance > 0 && result.iterations > 0) {
+          if(Math.abs(result.logLikelihood - previous) <= tolerance * Math.abs(previous)) {
+            stableIterations++;
+          } else {
+            stableIterations = 0;
+          }
+          if(stableIterations >= Math.max(patience, 1)) {
+            result.converged = true;
+            addToTrace(result, start, iterationStart, numInstances);
+            break;
+          }
+        }
+
+        // M-step
+        // the M-step only reads the instances, so there is no need to copy them
+        List<Instance> instances = new ArrayList<Instance>(labeled.getInstances());
+        instances.addAll(unlabeled.getInstances());
+        Dataset labeledPlusUnlabeled = Dataset.viewOf(instances);
+        labeledPlusUnlabeled.setAlphabets(labelAlphabet, featureAlphabet);
+        labeledPlusUnlabeled.makeVectors();
+        em.train(labeledPlusUnlabeled);
+        result.iterations++;
+        addToTrace(result, start, iterationStart, numInstances);
+      }
+    } finally {
+      if(executor != null) {
+        executor.shutdown();
+      }
     }
-    
+
     test.setAlphabets(labelAlphabet, featureAlphabet);
     test.makeVectors();
-    double accuracy = em.test(test);
+    result.accuracy = em.test(test);
+    result.model = em;
+    result.time = System.currentTimeMillis() - start;
+
+    return result;
+  }
+
+  private static void addToTrace(EmResult result, long start, long iterationStart, int numInstances) {
 
-    return accuracy;
+    long now = System.nanoTime();
+    double seconds = Math.max(now - iterationStart, 1) / 1e9;
+    result.trace.add(
+        result.trace.size() + 1,
+        result.logLikelihood,
+        System.currentTimeMillis() - start,
+        numInstances / seconds);
   }
 }
@@ -2,14 +2,20 @@ package em.implementation;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
+import utils.LogMath;
 import utils.Misc;
+import utils.Parallel;
 import data.Alphabet;
 import data.Dataset;
 import data.Instance;
+import data.SparseVector;
 
 /**
  * Implements a multinomial naive bayes classifier as described in:
@@ -32,8 +38,16 @@ public class EmModel {
   protected double[][] theta;
   // p(c) for all classes
   protected double[] priors;
+  // log10 p(w|c) for all classes (cached for classification)
+  protected double[][] logTheta;
+  // log10 p(c) for all classes (cached for classification)
+  protected double[] logPriors;
   // map labels to ints and ints to labels
   protected Alphabet labelAlphabet;
+  // runs E-step and M-step tasks (null means single-threaded)
+  protected ExecutorService executor;
+  // number of tasks to split E-step and M-step into
+  protected int numTasks;
   
   /** 
    * Set the label alphabet here. This cannot be done in initialize()
@@ -45,6 +59,16 @@ public class EmModel {
 	  this.weight = weight;
 	}
 	
+  /**
+   * Run the E-step and the M-step as multiple tasks. E-step tasks label
+   * disjoint ranges of instances and M-step tasks count disjoint ranges 
+   * of words, so the results are identical to the single-threaded ones.
+   */
+  public void setExecutor(ExecutorService executor, int numTasks) {
+    this.executor = executor;
+    this.numTasks = numTasks;
+  }
+	
   /**
    * Initialize various counts and data structures 
    * needed for training and train a model using a dataset. 
@@ -57,6 +81,39 @@ public class EmModel {
     theta = new double[numClasses][numWords];
     computeTheta(dataset);
     computePriors(dataset);
+    computeLogs();
+  }
+  
+  /**
+   * Start from the parameters of another model (e.g. one trained using 
+   * fewer labeled examples) instead of training on a dataset.
+   */
+  public void initialize(EmModel model) {
+    numClasses = model.numClasses;
+    numWords = model.numWords;
+    priors = model.priors.clone();
+    logPriors = model.logPriors.clone();
+    theta = new double[numClasses][];
+    logTheta = new double[numClasses][];
+    for(int label = 0; label < numClasses; label++) {
+      theta[label] = model.theta[label].clone();
+      logTheta[label] = model.logTheta[label].clone();
+    }
+  }
+  
+  /**
+   * Cache log10 of the model parameters so that 
+   * classification does not need to recompute them.
+   */
+  private void computeLogs() {
+    logPriors = new double[numClasses];
+    logTheta = new double[numClasses][numWords];
+    for(int label = 0; label < numClasses; label++) {
+      logPriors[label] = Math.log10(priors[label]);
+      for(int word = 0; word < numWords; word++) {
+        logTheta[label][word] = Math.log10(theta[label][word]);
+      }
+    }
   }
     
   /**
@@ -84,23 +141,62 @@ public class EmModel {
   /**
    * Compute how many times each word occurs in each class.
    * Values could be fractional since class membership is a probability.  
+   * Only the non-zero entries of each instance's vector are visited.
    */
-  private double[][] computeWordCounts(Dataset dataset) {
-    double[][] wordCounts = new double[numClasses][numWords];
-    for(int wordIndex = 0; wordIndex < numWords; wordIndex++) {
+  private double[][] computeWordCounts(final Dataset dataset) {
+    final double[][] wordCounts = new double[numClasses][numWords];
+    if(executor == null) {
+      computeWordCounts(dataset, wordCounts, 0, numWords);
+      return wordCounts;
+    }
+    
+    // each task owns a range of words so no two tasks write the same cell
+    int[] ranges = Parallel.ranges(numWords, numTasks);
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for(int task = 0; task < ranges.length - 1; task++) {
+      final int fromWord = ranges[task];
+      final int toWord = ranges[task + 1];
+      tasks.add(new Callable<Void>() {
+        public Void call() {
+          computeWordCounts(dataset, wordCounts, fromWord, toWord);
+          return null;
+        }
+      });
+    }
+    Parallel.invokeAll(executor, tasks);
+    return wordCounts;
+  }
+  
+  /**
+   * Count the words in range [fromWord, toWord) only. Makes a single pass 
+   * over the instances: each instance's class distribution is read once
+   * and its weighted counts go only into the instance's non-zero words.
+   */
+  private void computeWordCounts(Dataset dataset, double[][] wordCounts, int fromWord, int toWord) {
+    double[] classWeights = new double[numClasses];
+    for(Instance instance : dataset.getInstances()) {
+      double lambda = (instance.getLabel() == null ? weight : 1.0);
+      double[] classProbabilities = instance.getClassProbabilities();
       for(int classIndex = 0; classIndex < numClasses; classIndex++) {
-        wordCounts[classIndex][wordIndex] = 0;
-        for(Instance instance : dataset.getInstances()) {
-          double lambda = (instance.getLabel() == null ? weight : 1.0);
-          String label = labelAlphabet.getString(classIndex);
-          Float wordCount = instance.getDimensionValue(wordIndex); // null if count = 0 for this word
-          if(wordCount != null) {
-            wordCounts[classIndex][wordIndex] += lambda * wordCount * instance.getClassProbability(label); 
-          }
+        classWeights[classIndex] = lambda * classProbabilities[classIndex];
+      }
+      
+      SparseVector vector = instance.getVector();
+      int start = vector.find(fromWord);
+      if(start < 0) {
+        start = -(start + 1);
+      }
+      for(int i = start; i < vector.size(); i++) {
+        int wordIndex = vector.getIndex(i);
+        if(wordIndex >= toWord) {
+          break;
+        }
+        double value = vector.getValue(i);
+        for(int classIndex = 0; classIndex < numClasses; classIndex++) {
+          wordCounts[classIndex][wordIndex] += classWeights[classIndex] * value;
         }
       }
     }
-    return wordCounts;
   }
   
   /**
@@ -120,8 +216,7 @@ public class EmModel {
       double sum = 0;
       for(Instance instance : dataset.getInstances()) {
         double lambda = (instance.getLabel() == null ? weight : 1.0);
-        String label = labelAlphabet.getString(classIndex);
-        sum += lambda * instance.getClassProbability(label);
+        sum += lambda * instance.getClassProbability(classIndex);
       }
       priors[classIndex] = (1 + sum) / (numClasses + numLabeled + weight * numUnlabeled);
       assert !Double.isNaN(priors[classIndex]);
@@ -149,16 +244,48 @@ public class EmModel {
 	/**
    * Classify instances in a dataset. 
    * Set probability distribution over classes for each instance.
+   * Return the log-likelihood of the instances, i.e. the sum of log10 p(instance),
+   * which is the normalization constant of each instance's distribution.
    */
-  public void label(Dataset dataset) {
-    for(Instance instance : dataset.getInstances()) {
-      double[] logSum = getUnnormalizedClassLogProbs(instance);
-      double[] p = logToProb(logSum);
-      Map<String, Float> labelProbabilityDistribution = new HashMap<String, Float>();
-      for(int label = 0; label < numClasses; label++) {
-        labelProbabilityDistribution.put(labelAlphabet.getString(label), (float)p[label]);
+  public double label(Dataset dataset) {
+    dataset.copyOnWrite();
+    final List<Instance> instances = dataset.getInstances();
+    final double[] logLikelihoods = new double[instances.size()];
+    if(executor == null) {
+      label(instances, 0, instances.size(), logLikelihoods);
+    } else {
+      int[] ranges = Parallel.ranges(instances.size(), numTasks);
+      List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+      for(int task = 0; task < ranges.length - 1; task++) {
+        final int from = ranges[task];
+        final int to = ranges[task + 1];
+        tasks.add(new Callable<Void>() {
+          public Void call() {
+            label(instances, from, to, logLikelihoods);
+            return null;
+          }
+        });
       }
-      instance.setLabelProbabilityDistribution(labelProbabilityDistribution); 
+      Parallel.invokeAll(executor, tasks);
+    }
+
+    // sum in the order of the instances so that the result does not depend on the number of tasks
+    double logLikelihood = 0;
+    for(double instanceLogLikelihood : logLikelihoods) {
+      logLikelihood += instanceLogLikelihood;
+    }
+    return logLikelihood;
+  }
+  
+  /**
+   * Label the instances in range [from, to). Store log10 p(instance) of each.
+   */
+  private void label(List<Instance> instances, int from, int to, double[] logLikelihoods) {
+    for(int i = from; i < to; i++) {
+      Instance instance = instances.get(i);
+      double[] logSum = getUnnormalizedClassLogProbs(instance);
+      // write the distribution into the instance's own array
+      logLikelihoods[i] = LogMath.normalize(logSum, instance.getClassProbabilities(numClasses));
     }
   }
   
@@ -168,15 +295,11 @@ public class EmModel {
    * Eventually, this version should the replace the one above.
    */
   public void label2(Dataset dataset) {
+    dataset.copyOnWrite();
     for(Instance instance : dataset.getInstances()) {
       double[] logSum = getUnnormalizedClassLogProbs(instance);
-      double[] p = logToProb(logSum);
-      
-      Map<String, Float> labelProbabilityDistribution = new HashMap<String, Float>();
-      for(int label = 0; label < numClasses; label++) {
-        labelProbabilityDistribution.put(labelAlphabet.getString(label), (float)p[label]);
-      }
-      instance.setLabelProbabilityDistribution(labelProbabilityDistribution); 
+      double[] p = instance.getClassProbabilities(numClasses);
+      LogMath.normalize(logSum, p);
 
       String prediction = labelAlphabet.getString(Misc.getIndexOfLargestElement(p));
       instance.setLabel(prediction);
@@ -215,11 +338,8 @@ public class EmModel {
     double dataLogLikelihood = 0.0; 
     for(Instance instance : unlabeled.getInstances()) {
       double[] classLogProbs = getUnnormalizedClassLogProbs(instance);
-      BigDecimal instanceProbability = new BigDecimal(0);
-      for(int label = 0; label < numClasses; label++) {
-        instanceProbability = instanceProbability.add(powerOfTen(classLogProbs[label]));
-      }
-      dataLogLikelihood = dataLogLikelihood + log(instanceProbability, 2);
+      // sum out the class to get log[p(instance)] without underflowing
+      dataLogLikelihood = dataLogLikelihood + LogMath.logSumExp(classLogProbs);
     }
     for(Instance instance : labeled.getInstances()) {
       double[] classLogProbs = getUnnormalizedClassLogProbs(instance);
@@ -230,37 +350,35 @@ public class EmModel {
   }
   
   /**
-   * Calculate log of a big decimal.
-   * log10(unsc_val * 10^-scale) = log10(unsc_val) + log10(10^-scale) = log10(unsc_val) - scale
+   * Calculate the log-likelihood of labeled instances given current model,
+   * i.e. the sum of log10 p(label, instance). Together with the value returned
+   * by label() for the unlabeled instances, this gives the data log-likelihood.
    */
-  public static double log(BigDecimal argument, int numDecimalPlaces) {
-    // log10(unsc_val * 10^-scale) = log10(unsc_val) + log10(10^-scale) = log10(unsc_val) - scale
-    BigInteger unscaledValue = argument.unscaledValue();
-    double unscaledValueRounded = (double) Math.round(unscaledValue.doubleValue() * 10 * numDecimalPlaces) / (10 * numDecimalPlaces);
-    int scale = argument.scale();
-    return Math.log10(unscaledValueRounded) - scale;
+  public double getLabeledLogLikelihood(Dataset labeled) {
+    double logLikelihood = 0.0;
+    for(Instance instance : labeled.getInstances()) {
+      double[] classLogProbs = getUnnormalizedClassLogProbs(instance);
+      logLikelihood += classLogProbs[labelAlphabet.getIndex(instance.getLabel())];
+    }
+    return logLikelihood;
   }
   
   /**
    * Calculate data likelihood given current model. 
-   * Based on equation 8 in the paper.
+   * Based on equation 8 in the paper. The product is accumulated in log 
+   * space and only the final result is converted to a big decimal.
    */
   public BigDecimal getDataLikelihood(Dataset labeled, Dataset unlabeled, int numDecimalPlaces) {
-    BigDecimal dataLikelihood = new BigDecimal(0);
+    double dataLogLikelihood = 0.0;
     for(Instance instance : unlabeled.getInstances()) {
       double[] classLogProbs = getUnnormalizedClassLogProbs(instance); // log[p(class, instance)] for all classess
-      BigDecimal instanceProbability = new BigDecimal(0);              // sum out the class to get p(instance)
-      for(int label = 0; label < numClasses; label++) {
-        instanceProbability = instanceProbability.add(powerOfTen(classLogProbs[label]));
-      }
-      dataLikelihood = dataLikelihood.multiply(instanceProbability);
+      dataLogLikelihood += LogMath.logSumExp(classLogProbs);           // sum out the class to get p(instance)
     }
     for(Instance instance : labeled.getInstances()) {
       double[] classLogProbs = getUnnormalizedClassLogProbs(instance);
-      BigDecimal instanceProbability = powerOfTen(classLogProbs[labelAlphabet.getIndex(instance.getLabel())]);
-      dataLikelihood = dataLikelihood.multiply(instanceProbability);  
+      dataLogLikelihood += classLogProbs[labelAlphabet.getIndex(instance.getLabel())];
     }
-    return dataLikelihood;
+    return powerOfTen(dataLogLikelihood);
   }
   
 	 /**
@@ -272,27 +390,25 @@ public class EmModel {
    * Calculations are done in log space. I.e. we need to calculate:
    * log[p(c)p(w_0|c)...p(w_n-1|c)] = log[p(c)] + log[p(w_0|c)] + ... + log[p(w_n-1|c)]
    * 
+   * Only the words that exist in this instance's vector are visited. 
    * OOV words (i.e. words not seen during training) are currently ignored.
-   * 
-   * TODO: For the inner loop, iterate over words that exist in this vector.
-   * For some of them (OOV words), p(w|c) will be unknown (ignore them).
    */
   public double[] getUnnormalizedClassLogProbs(Instance instance) {
     double[] logSum = new double[numClasses];
+    SparseVector vector = instance.getVector();
     for(int label = 0; label < numClasses; label++) {
-      logSum[label] = Math.log10(priors[label]); 
-      // iterate over words that were seen during training
-      for(int word = 0; word < numWords; word++) {
-        Float wordCount = instance.getDimensionValue(word);
-        if(wordCount == null) {
-          // this instance does not contain the current word; just go on to
-          // the next word (i.e. pretend the wordCount for this word is zero)
+      logSum[label] = logPriors[label]; 
+      double[] classLogTheta = logTheta[label];
+      // iterate over words in this instance that were seen during training
+      for(int i = 0; i < vector.size(); i++) {
+        int word = vector.getIndex(i);
+        if(word >= numWords) {
           continue;
         }
-        logSum[label] += wordCount * Math.log10(theta[label][word]);
-        assert !Double.isNaN(logSum[label]);
-        assert !Double.isInfinite(logSum[label]);
+        logSum[label] += vector.getValue(i) * classLogTheta[word];
       }
+      assert !Double.isNaN(logSum[label]);
+      assert !Double.isInfinite(logSum[label]);
     }
     return logSum;
   }
@@ -306,7 +422,7 @@ public class EmModel {
     BigDecimal exponentAsBigDecimal = new BigDecimal(String.valueOf(exponent));
     BigDecimal integerPart = new BigDecimal(exponentAsBigDecimal.intValue());
     BigDecimal fractionalPart = exponentAsBigDecimal.subtract(integerPart);
-    BigDecimal tenToIntegerPart = new BigDecimal(BigInteger.valueOf(10), -1 * integerPart.intValue());
+    BigDecimal tenToIntegerPart = new BigDecimal(BigInteger.ONE, -1 * integerPart.intValue());
     BigDecimal tenToFractionalPart = new BigDecimal(Math.pow(10, fractionalPart.doubleValue()));
     BigDecimal result = tenToIntegerPart.multiply(tenToFractionalPart);
     return result;
@@ -314,26 +430,11 @@ public class EmModel {
     
   /**
    * Convert unnormalized log probabilities to probabilities for each class.
+   * Unnormalized probabilities are often very small, e.g. 10^-802.345, 
+   * so the normalization is done in log space to avoid an underflow.
    */
   public double[] logToProb(double[] unnormalizedClassLogProbs) {
-    double[] probs = new double[unnormalizedClassLogProbs.length];
-    // unnormalized probabilities are often very small, e.g. 10^-802.345
-    // which causes an underflow, so need to use big decimal instead
-    BigDecimal[] unnormalizedClassProbs = new BigDecimal[unnormalizedClassLogProbs.length];
-    // we have log(p(c)p(w_0|c)...p(w_n-1|c)) for each class
-    // compute unnormalized probabilities as 10^(p(c)p(w_0|c)...p(w_n-1|c))
-    for(int label = 0; label < numClasses; label++) {
-      unnormalizedClassProbs[label] = powerOfTen(unnormalizedClassLogProbs[label]);
-    }
-    // compute the normalization constant
-    BigDecimal normalizer = new BigDecimal(0);
-    for(int label = 0; label < numClasses; label++) {
-      normalizer = normalizer.add(unnormalizedClassProbs[label]);
-    }
-    for(int label = 0; label < numClasses; label++) {
-      probs[label] = unnormalizedClassProbs[label].divide(normalizer, RoundingMode.HALF_UP).doubleValue();
-    }
-    return probs;
+    return LogMath.logToProb(unnormalizedClassLogProbs);
   }
   
   /**
@@ -0,0 +1,24 @@
+package em.implementation;
+
+/**
+ * Outcome of an em run.
+ *
+ * @author dmitriy dligach
+ */
+public class EmResult {
+
+  // model after the last iteration
+  public EmModel model;
+  // accuracy of the model on the test set
+  public double accuracy;
+  // number of iterations that were run
+  public int iterations;
+  // true if em stopped because the log-likelihood stopped changing
+  public boolean converged;
+  // data log-likelihood computed by the last E-step (NaN if em ran no iterations)
+  public double logLikelihood;
+  // log-likelihood, time, and throughput of each iteration
+  public EmTrace trace;
+  // wall-clock time of the run in milliseconds
+  public long time;
+}
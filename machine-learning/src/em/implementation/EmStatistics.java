@@ -0,0 +1,46 @@
+package em.implementation;
+
+/**
+ * Totals over many em runs: the number of iterations that were run compared
+ * to the number of iterations that runs of fixed length would have done,
+ * and the time spent in em. Can be updated from multiple threads. The
+ * wall-clock gain over fixed-length runs is measured by em.test.BenchmarkWarmStart.
+ *
+ * @author dmitriy dligach
+ */
+public class EmStatistics {
+
+  private int runs;
+  private int warmStarts;
+  private long iterations;
+  private long maxIterations;
+  private long time;
+
+  /**
+   * Add a run that was allowed to do at most maxIterations iterations.
+   */
+  public synchronized void add(EmResult result, int maxIterations, boolean warmStart) {
+    runs++;
+    if(warmStart) {
+      warmStarts++;
+    }
+    iterations += result.iterations;
+    this.maxIterations += maxIterations;
+    time += result.time;
+  }
+
+  public synchronized long getIterationsSaved() {
+    return maxIterations - iterations;
+  }
+
+  public synchronized String report() {
+    return String.format(
+        "%d em runs (%d warm-started): %d of %d iterations run, %d saved; %.1f s in em",
+        runs,
+        warmStarts,
+        iterations,
+        maxIterations,
+        getIterationsSaved(),
+        time / 1000.0);
+  }
+}
@@ -0,0 +1,62 @@
+package em.implementation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-iteration record of an em run. The log-likelihood of an iteration is
+ * that of the model em had at the start of the iteration (it is computed by
+ * the E-step). If em converged, the last iteration consists of the E-step only.
+ *
+ * @author dmitriy dligach
+ */
+public class EmTrace {
+
+  public static class Entry {
+
+    // iteration number starting from 1
+    public final int iteration;
+    // data log-likelihood (log10)
+    public final double logLikelihood;
+    // time since the start of the run in milliseconds
+    public final long time;
+    // labeled and unlabeled instances processed per second in this iteration
+    public final double instancesPerSecond;
+
+    public Entry(int iteration, double logLikelihood, long time, double instancesPerSecond) {
+      this.iteration = iteration;
+      this.logLikelihood = logLikelihood;
+      this.time = time;
+      this.instancesPerSecond = instancesPerSecond;
+    }
+  }
+
+  private List<Entry> entries = new ArrayList<Entry>();
+
+  public void add(int iteration, double logLikelihood, long time, double instancesPerSecond) {
+    entries.add(new Entry(iteration, logLikelihood, time, instancesPerSecond));
+  }
+
+  public List<Entry> getEntries() {
+    return entries;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public Entry get(int index) {
+    return entries.get(index);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder output = new StringBuilder();
+    output.append(String.format("%9s %18s %9s %12s\n", "iteration", "log-likelihood", "time (ms)", "instances/s"));
+    for(Entry entry : entries) {
+      output.append(String.format("%9d %18.4f %9d %12.0f\n",
+          entry.iteration, entry.logLikelihood, entry.time, entry.instancesPerSecond));
+    }
+    return output.toString();
+  }
+}
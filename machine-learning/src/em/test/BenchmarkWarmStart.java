@@ -0,0 +1,75 @@
+package em.test;
+
+import java.io.IOException;
+import java.util.Set;
+
+import semsup.eval.Configuration;
+import semsup.eval.Evaluation;
+import data.DatasetRegistry;
+import data.I2b2Dataset;
+import data.Split;
+import em.eval.EvaluatePhenotype;
+
+/**
+ * Run a sweep over the number of labeled examples twice: em from scratch for
+ * a fixed number of iterations and warm-started em with a convergence tolerance.
+ * Print the time, the mean accuracy, and the iteration counts of both sweeps.
+ *
+ * Arguments: [data file, label file [, tolerance]]
+ */
+public class BenchmarkWarmStart {
+
+  public static final double TOLERANCE = 1e-5;
+
+  public static void main(String[] args) throws IOException {
+
+    String dataFile = Constants.DATAFILE;
+    String labelFile = Constants.LABELFILE;
+    Set<String> sourceLabels = semsup.eval.Constants.t2dSourceLabels;
+    String targetLabel = semsup.eval.Constants.t2dTargetLabel;
+    if(args.length > 1) {
+      dataFile = args[0];
+      labelFile = args[1];
+      sourceLabels = null;
+      targetLabel = null;
+    }
+    double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : TOLERANCE;
+
+    semsup.eval.Constants.folds = Constants.FOLDS;
+    semsup.eval.Constants.rndSeed = 100;
+    semsup.eval.Constants.defaultLambda = 1.0;
+    semsup.eval.Constants.emThreads = 1;
+    semsup.eval.Constants.gridSearch = false;
+
+    for(boolean warmStart : new boolean[] {false, true}) {
+      semsup.eval.Constants.warmStart = warmStart;
+      semsup.eval.Constants.tolerance = warmStart ? tolerance : 0;
+      semsup.eval.Constants.patience = 1;
+      EvaluatePhenotype evaluation = new EvaluatePhenotype("benchmark");
+
+      Configuration first = new Configuration(dataFile, labelFile, 0, 0, 0, sourceLabels, targetLabel);
+      I2b2Dataset dataset = Evaluation.loadLabeled(first);
+      Split[] splits = dataset.split(Constants.FOLDS);
+
+      long start = System.currentTimeMillis();
+      double cumulativeAccuracy = 0;
+      int numRuns = 0;
+      for(int fold = 0; fold < Constants.FOLDS; fold++) {
+        for(int labeled = Constants.STEP; labeled < Constants.MAXLABELED; labeled += Constants.STEP) {
+          Configuration configuration = new Configuration(
+              dataFile, labelFile, labeled, Constants.UNLABELED, Constants.ITERATIONS, sourceLabels, targetLabel);
+          Split split = new Split(dataset, splits[fold].getPoolRows(), splits[fold].getTestRows());
+          I2b2Dataset unlabeled = DatasetRegistry.getUnlabeled(dataFile, labelFile, Constants.UNLABELED);
+          cumulativeAccuracy += evaluation.evaluateFold(dataset, unlabeled, split, fold, configuration);
+          numRuns++;
+        }
+      }
+
+      System.out.format("%-5s %6d ms, mean accuracy %.4f\n",
+          warmStart ? "warm" : "cold",
+          System.currentTimeMillis() - start,
+          cumulativeAccuracy / numRuns);
+      System.out.println("      " + evaluation.getStatistics().report());
+    }
+  }
+}
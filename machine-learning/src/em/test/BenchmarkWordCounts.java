@@ -0,0 +1,112 @@
+package em.test;
+
+import java.util.Random;
+
+import data.Dataset;
+import data.Instance;
+import em.implementation.EmModel;
+
+/**
+ * Compare the M-step word counting in EmModel against the old
+ * word -> class -> instance loop on a synthetic 50k-feature dataset.
+ */
+public class BenchmarkWordCounts {
+
+  public static final int NUMWORDS = 50000;
+  public static final int NUMLABELED = 200;
+  public static final int NUMUNLABELED = 800;
+  public static final int WORDSPERINSTANCE = 200;
+  public static final int REPETITIONS = 5;
+
+  public static void main(String[] args) {
+
+    Random random = new Random(100);
+    Dataset dataset = new Dataset();
+    for(int i = 0; i < NUMLABELED + NUMUNLABELED; i++) {
+      Instance instance = new Instance();
+      instance.setLabel(random.nextBoolean() ? "yes" : "no");
+      for(int j = 0; j < WORDSPERINSTANCE; j++) {
+        instance.addFeature("word" + random.nextInt(NUMWORDS), 1 + random.nextInt(3));
+      }
+      dataset.add(instance);
+    }
+    dataset.makeAlphabets();
+    dataset.makeVectors();
+    dataset.setInstanceClassProbabilityDistribution(dataset.getLabelAlphabet());
+    // hide the labels of the unlabeled instances and give them soft labels
+    for(Instance instance : dataset.getInstances().subList(NUMLABELED, dataset.size())) {
+      double p = random.nextDouble();
+      instance.setLabel(null);
+      instance.setClassProbabilities(new double[] {p, 1 - p});
+    }
+
+    InspectableModel model = new InspectableModel(dataset);
+    long start = System.nanoTime();
+    for(int repetition = 0; repetition < REPETITIONS; repetition++) {
+      model.train(dataset);
+    }
+    double newTime = (System.nanoTime() - start) / 1e6 / REPETITIONS;
+
+    start = System.nanoTime();
+    double[][] oldCounts = null;
+    for(int repetition = 0; repetition < REPETITIONS; repetition++) {
+      oldCounts = model.computeWordCountsOld(dataset);
+    }
+    double oldTime = (System.nanoTime() - start) / 1e6 / REPETITIONS;
+
+    double maxDifference = model.maxThetaDifference(oldCounts);
+    System.out.format("words: %d, instances: %d\n", dataset.getNumberOfDimensions(), dataset.size());
+    System.out.format("old word counts: %.1f ms\n", oldTime);
+    System.out.format("new training (counts, theta, priors): %.1f ms\n", newTime);
+    System.out.format("speedup: %.1fx\n", oldTime / newTime);
+    System.out.format("max theta difference: %g\n", maxDifference);
+  }
+
+  /**
+   * Gives access to the model parameters.
+   */
+  static class InspectableModel extends EmModel {
+
+    public InspectableModel(Dataset dataset) {
+      super(dataset.getLabelAlphabet(), 1.0);
+    }
+
+    /**
+     * Word counts as EmModel used to compute them.
+     */
+    public double[][] computeWordCountsOld(Dataset dataset) {
+      double[][] wordCounts = new double[numClasses][numWords];
+      for(int wordIndex = 0; wordIndex < numWords; wordIndex++) {
+        for(int classIndex = 0; classIndex < numClasses; classIndex++) {
+          wordCounts[classIndex][wordIndex] = 0;
+          for(Instance instance : dataset.getInstances()) {
+            double lambda = (instance.getLabel() == null ? weight : 1.0);
+            Float wordCount = instance.getDimensionValue(wordIndex); // null if count = 0 for this word
+            if(wordCount != null) {
+              wordCounts[classIndex][wordIndex] += lambda * wordCount * instance.getClassProbability(classIndex);
+            }
+          }
+        }
+      }
+      return wordCounts;
+    }
+
+    /**
+     * Compare theta against the one computed from the old word counts.
+     */
+    public double maxThetaDifference(double[][] wordCounts) {
+      double maxDifference = 0;
+      for(int label = 0; label < numClasses; label++) {
+        double total = 0;
+        for(int word = 0; word < numWords; word++) {
+          total += wordCounts[label][word];
+        }
+        for(int word = 0; word < numWords; word++) {
+          double oldTheta = (1 + wordCounts[label][word]) / (numWords + total);
+          maxDifference = Math.max(maxDifference, Math.abs(oldTheta - theta[label][word]) / oldTheta);
+        }
+      }
+      return maxDifference;
+    }
+  }
+}
@@ -1,7 +1,6 @@
 package em.test;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Random;
 
@@ -31,7 +30,7 @@ public class EmWithTrueUnlabeled {
     }
   }
   
-  public static double testEm(int numberOfLabeledExamples, int iterations) throws FileNotFoundException {
+  public static double testEm(int numberOfLabeledExamples, int iterations) throws IOException {
 
     // load labeled data
     I2b2Dataset dataset = new I2b2Dataset();
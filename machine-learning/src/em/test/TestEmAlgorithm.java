@@ -1,6 +1,5 @@
 package em.test;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Random;
 
@@ -20,7 +19,7 @@ public class TestEmAlgorithm {
     }
   }
   
-  public static double testEm(int numberOfLabeledExamples, int iterations) throws FileNotFoundException {
+  public static double testEm(int numberOfLabeledExamples, int iterations) throws IOException {
 
     I2b2Dataset dataset = new I2b2Dataset();
     dataset.loadCSVFile(Constants.DATAFILE, Constants.LABELFILE);
@@ -37,7 +37,7 @@ public class TestEmModel {
 			testSet.setAlphabets(trainSet.getLabelAlphabet(), trainSet.getFeatureAlphabet());
 			testSet.makeVectors();
 
-			trainSet.setInstanceClassProbabilityDistribution(new HashSet<String>(dataset.getLabelAlphabet().getStrings()));
+			trainSet.setInstanceClassProbabilityDistribution(dataset.getLabelAlphabet());
 			EmModel classifier = new EmModel(dataset.getLabelAlphabet(), 1.0);
 			
 			classifier.train(trainSet);
@@ -1,10 +1,10 @@
 package em.thyme;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.HashSet;
 import java.util.Random;
 
+import data.ByteInterner;
+import data.CsvInstanceReader;
 import data.Dataset;
 import em.implementation.EmModel;
 
@@ -23,14 +23,16 @@ public class LearningCurve {
     }
   }
   
-  public static double testEm(int numberOfLabeledExamples, int iterations) throws FileNotFoundException {
+  public static double testEm(int numberOfLabeledExamples, int iterations) throws IOException {
     
+    // train and test feature names share one string table
+    ByteInterner interner = new ByteInterner();
     Dataset pool = new Dataset();
-    pool.loadCSVFile(TRAINSET);    
+    pool.load(new CsvInstanceReader(TRAINSET, interner));    
     pool.makeAlphabets();
     
     Dataset test = new Dataset();
-    test.loadCSVFile(TESTSET);
+    test.load(new CsvInstanceReader(TESTSET, interner));
     test.setAlphabets(pool.getLabelAlphabet(), pool.getFeatureAlphabet());
     test.makeVectors();
     
@@ -39,7 +41,7 @@ public class LearningCurve {
     labeled.setAlphabets(pool.getLabelAlphabet(), pool.getFeatureAlphabet());
     labeled.makeVectors();
 
-    labeled.setInstanceClassProbabilityDistribution(new HashSet<String>(pool.getLabelAlphabet().getStrings()));
+    labeled.setInstanceClassProbabilityDistribution(pool.getLabelAlphabet());
     EmModel classifier = new EmModel(pool.getLabelAlphabet(), 1);
     classifier.train(labeled);
     double accuracy = classifier.test(test);
@@ -1,13 +1,14 @@
 package em.thyme;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Random;
 
 import com.google.common.base.Charsets;
 import com.google.common.io.Files;
 
+import data.ByteInterner;
+import data.CsvInstanceReader;
 import data.Dataset;
 import em.implementation.EmAlgorithm;
 
@@ -39,14 +40,16 @@ public class TestEmAlgorithm {
     }
   }
 
-  public static double testEm(int numberOfLabeledExamples, int iterations) throws FileNotFoundException {
+  public static double testEm(int numberOfLabeledExamples, int iterations) throws IOException {
 
+    // train and test feature names share one string table
+    ByteInterner interner = new ByteInterner();
     Dataset pool = new Dataset();
-    pool.loadCSVFile(TRAINSET);    
+    pool.load(new CsvInstanceReader(TRAINSET, interner));    
     pool.makeAlphabets();
 
     Dataset test = new Dataset();
-    test.loadCSVFile(TESTSET);
+    test.load(new CsvInstanceReader(TESTSET, interner));
 
     Dataset labeled = new Dataset();
     labeled.add(pool.popRandom(numberOfLabeledExamples, new Random(RNDSEED)));
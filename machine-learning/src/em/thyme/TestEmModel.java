@@ -1,9 +1,10 @@
 package em.thyme;
 
 import java.io.IOException;
-import java.util.HashSet;
 
 import semsup.eval.Constants;
+import data.ByteInterner;
+import data.CsvInstanceReader;
 import data.Dataset;
 import em.implementation.EmModel;
 
@@ -11,17 +12,19 @@ public class TestEmModel {
 
   public static void main(String[] args) throws IOException {
 
+    // train and test feature names share one string table
+    ByteInterner interner = new ByteInterner();
     Dataset trainSet = new Dataset();
-    trainSet.loadCSVFile("/Users/Dima/Boston/Data/Thyme/Vectors/EventTimeContains/train.txt");
+    trainSet.load(new CsvInstanceReader("/Users/Dima/Boston/Data/Thyme/Vectors/EventTimeContains/train.txt", interner));
     Dataset testSet = new Dataset();
-    testSet.loadCSVFile("/Users/Dima/Boston/Data/Thyme/Vectors/EventTimeContains/test.txt");
+    testSet.load(new CsvInstanceReader("/Users/Dima/Boston/Data/Thyme/Vectors/EventTimeContains/test.txt", interner));
 
     trainSet.makeAlphabets();
     trainSet.makeVectors();
     testSet.setAlphabets(trainSet.getLabelAlphabet(), trainSet.getFeatureAlphabet());
     testSet.makeVectors();
     
-    trainSet.setInstanceClassProbabilityDistribution(new HashSet<String>(trainSet.getLabelAlphabet().getStrings()));
+    trainSet.setInstanceClassProbabilityDistribution(trainSet.getLabelAlphabet());
     EmModel classifier = new EmModel(trainSet.getLabelAlphabet(), Constants.defaultLambda);
     classifier.train(trainSet);
     double accuracy = classifier.test(testSet);
@@ -0,0 +1,181 @@
+package gibbs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import utils.Parallel;
+import cv.FoldRunner;
+
+/**
+ * Draws from Dirichlet distributions using gamma variates generated with the
+ * method of Marsaglia and Tsang ("A simple method for generating gamma variables",
+ * 2000). The draws are written into arrays supplied by the caller.
+ *
+ * The dimensions are split into blocks of blockSize. Each block of each
+ * distribution has its own source of randomness, reseeded for every draw from
+ * a seed taken from the sampler's random generator, so the draws do not depend
+ * on the number of threads. With an executor, the blocks are sampled in parallel.
+ *
+ * @author dmitriy dligach
+ */
+public class DirichletSampler {
+
+  public static final int blockSize = 4096;
+
+  private Random random;
+  private ExecutorService executor;
+
+  // one generator per (distribution, block); reused across draws
+  private Random[] blockRandoms = new Random[0];
+  // sum of the gamma variates of each (distribution, block)
+  private double[] blockSums = new double[0];
+
+  /**
+   * Sample in the calling thread.
+   */
+  public DirichletSampler(long seed) {
+    this(seed, null);
+  }
+
+  /**
+   * Sample the blocks on the executor. The calling thread must not be
+   * one of the executor's threads.
+   */
+  public DirichletSampler(long seed, ExecutorService executor) {
+
+    this.random = new Random(seed);
+    this.executor = executor;
+  }
+
+  /**
+   * Draw theta[d] ~ Dirichlet(counts[d] + alpha[d]) for each distribution d.
+   */
+  public void sample(final double[][] counts, final double[] alpha, final double[][] theta) {
+
+    final int numBlocks = (theta[0].length + blockSize - 1) / blockSize;
+    final int numTasks = theta.length * numBlocks;
+    if(blockRandoms.length < numTasks) {
+      blockRandoms = new Random[numTasks];
+      for(int task = 0; task < numTasks; task++) {
+        blockRandoms[task] = new Random();
+      }
+      blockSums = new double[numTasks];
+    }
+    long seed = random.nextLong();
+    for(int task = 0; task < numTasks; task++) {
+      blockRandoms[task].setSeed(FoldRunner.foldSeed(seed, task));
+    }
+
+    if(executor == null || numTasks < 2) {
+      for(int task = 0; task < numTasks; task++) {
+        sampleBlock(counts, alpha, theta, numBlocks, task);
+      }
+      for(int task = 0; task < numTasks; task++) {
+        normalizeBlock(theta, numBlocks, task);
+      }
+      return;
+    }
+
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for(int task = 0; task < numTasks; task++) {
+      final int block = task;
+      tasks.add(new Callable<Void>() {
+        public Void call() {
+          sampleBlock(counts, alpha, theta, numBlocks, block);
+          return null;
+        }
+      });
+    }
+    Parallel.invokeAll(executor, tasks);
+
+    tasks.clear();
+    for(int task = 0; task < numTasks; task++) {
+      final int block = task;
+      tasks.add(new Callable<Void>() {
+        public Void call() {
+          normalizeBlock(theta, numBlocks, block);
+          return null;
+        }
+      });
+    }
+    Parallel.invokeAll(executor, tasks);
+  }
+
+  /**
+   * Fill a block of a distribution with gamma variates and record their sum.
+   */
+  private void sampleBlock(double[][] counts, double[] alpha, double[][] theta, int numBlocks, int task) {
+
+    int distribution = task / numBlocks;
+    int from = (task % numBlocks) * blockSize;
+    int to = Math.min(from + blockSize, theta[distribution].length);
+    Random blockRandom = blockRandoms[task];
+    double[] distributionCounts = counts[distribution];
+    double[] distributionTheta = theta[distribution];
+
+    double sum = 0;
+    for(int i = from; i < to; i++) {
+      distributionTheta[i] = nextGamma(blockRandom, distributionCounts[i] + alpha[distribution]);
+      sum += distributionTheta[i];
+    }
+    blockSums[task] = sum;
+  }
+
+  /**
+   * Divide a block of a distribution by the sum over all of its blocks.
+   */
+  private void normalizeBlock(double[][] theta, int numBlocks, int task) {
+
+    int distribution = task / numBlocks;
+    double sum = 0;
+    for(int block = 0; block < numBlocks; block++) {
+      sum += blockSums[distribution * numBlocks + block];
+    }
+
+    int from = (task % numBlocks) * blockSize;
+    int to = Math.min(from + blockSize, theta[distribution].length);
+    double[] distributionTheta = theta[distribution];
+    for(int i = from; i < to; i++) {
+      distributionTheta[i] /= sum;
+    }
+  }
+
+  /**
+   * Draw from Gamma(shape, 1). For shape < 1, a draw for shape + 1 is
+   * multiplied by U^(1 / shape), where U is uniform on [0, 1).
+   */
+  public static double nextGamma(Random random, double shape) {
+
+    if(shape == 1) {
+      // exponential; common for words with no counts when alpha is 1
+      return -Math.log(1 - random.nextDouble());
+    }
+    if(shape < 1) {
+      return nextGamma(random, shape + 1) * Math.pow(random.nextDouble(), 1 / shape);
+    }
+
+    double d = shape - 1.0 / 3;
+    double c = 1 / Math.sqrt(9 * d);
+    while(true) {
+      double x;
+      double v;
+      do {
+        x = random.nextGaussian();
+        v = 1 + c * x;
+      } while(v <= 0);
+      v = v * v * v;
+
+      double u = random.nextDouble();
+      // squeeze, then the exact test
+      if(u < 1 - 0.0331 * x * x * x * x) {
+        return d * v;
+      }
+      if(Math.log(u) < 0.5 * x * x + d * (1 - v + Math.log(v))) {
+        return d * v;
+      }
+    }
+  }
+}
@@ -1,13 +1,10 @@
 package gibbs;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.List;
 import java.util.Random;
 
-import org.apache.commons.math3.stat.StatUtils;
-
 import semsup.eval.Configuration;
 import semsup.eval.Constants;
 import semsup.eval.Evaluation;
@@ -15,7 +12,10 @@ import semsup.eval.Evaluation;
 import com.google.common.base.Charsets;
 import com.google.common.io.Files;
 
+import cv.FoldResults;
+import cv.FoldRunner;
 import data.Dataset;
+import data.DatasetRegistry;
 import data.I2b2Dataset;
 import data.Split;
 
@@ -41,8 +41,7 @@ public class Evaluate {
       for(Configuration configuration : configurations) {
         double accuracy = 0.0;
         if(configuration.numUnlabeled == 0) {
-          double[] foldAccuracy = Evaluation.evaluateBaseline(configuration);
-          accuracy = StatUtils.mean(foldAccuracy);
+          accuracy = Evaluation.evaluateBaseline(configuration).getMean();
         } else {
           accuracy = evaluateSampler(configuration);
         }
@@ -57,40 +56,37 @@ public class Evaluate {
   /**
    * Evaluate a configuration. Return n-fold CV accuracy.
    */
-  public static double evaluateSampler(Configuration configuration) throws FileNotFoundException {
+  public static double evaluateSampler(Configuration configuration) throws IOException {
 
-    // load labeled data
-    I2b2Dataset dataset = new I2b2Dataset();
-    dataset.loadCSVFile(configuration.dataPath, configuration.labelPath);
-    // load unlabeled data
-    I2b2Dataset unlabeled = new I2b2Dataset();
-    unlabeled.loadFromCSVFile(configuration.dataPath, configuration.labelPath, configuration.numUnlabeled);
-    if(configuration.sourceLabels != null) {
-      // no need to remap unlabeled since there are no labels
-      dataset.mapLabels(configuration.sourceLabels, configuration.targetLabel);
-    }
-    // make alphabets now, after labels were potentially remapped 
-    dataset.makeAlphabets();
+    // load labeled and unlabeled data (each file is read only once);
+    // no need to remap unlabeled since there are no labels
+    I2b2Dataset dataset = Evaluation.loadLabeled(configuration);
+    I2b2Dataset unlabeled = DatasetRegistry.getUnlabeled(configuration.dataPath, configuration.labelPath, configuration.numUnlabeled);
 
-    Split[] splits = dataset.split(Constants.folds);
-    double cumulativeAccuracy = 0;
+    final I2b2Dataset data = dataset;
+    final I2b2Dataset unlabeledData = unlabeled;
+    final Split[] splits = dataset.split(Constants.folds);
+    final int numLabeled = configuration.numLabeled;
 
-    for(int fold = 0; fold < Constants.folds; fold++) {
-      Dataset labeled = new Dataset();
-      Dataset nontest = splits[fold].getPoolSet();
-      Dataset test = splits[fold].getTestSet();
+    FoldRunner runner = new FoldRunner(Constants.foldThreads, Constants.rndSeed);
+    FoldResults results = runner.run(Constants.folds, new FoldRunner.FoldTask() {
+      public double run(int fold, Random random) {
+        Dataset labeled = new Dataset();
+        Dataset nontest = splits[fold].getPoolSet();
+        Dataset test = splits[fold].getTestSet();
 
-      labeled.add(nontest.popRandom(configuration.numLabeled, new Random(100)));
-      test.hideLabels();
-      
-      Model sampler = new Model(labeled, unlabeled, test, dataset.getLabelAlphabet(), dataset.getFeatureAlphabet());
-      sampler.run();
-      double accuracy = sampler.evaluate();
-      
-      test.restoreLabels();
-      cumulativeAccuracy += accuracy;
-    }
+        labeled.add(nontest.popRandom(numLabeled, new Random(100)));
+        test.hideLabels();
+
+        MultiChainSampler sampler = new MultiChainSampler(Model.numChains, MultiChainSampler.getSharedPool(), random.nextLong());
+        double accuracy = sampler.run(labeled, unlabeledData, test, data.getLabelAlphabet(), data.getFeatureAlphabet());
+        System.out.format("fold %d: %d sweeps, r-hat %.3f\n", fold, sampler.getSweeps(), sampler.getRhat());
+
+        test.restoreLabels();
+        return accuracy;
+      }
+    });
 
-    return cumulativeAccuracy / Constants.folds;    
+    return results.getMean();
   }
 }
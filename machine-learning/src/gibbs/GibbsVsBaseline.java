@@ -1,11 +1,11 @@
 package gibbs;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.HashSet;
 import java.util.Random;
 
 import semsup.eval.Constants;
+import cv.FoldResults;
+import cv.FoldRunner;
 import data.Dataset;
 import data.I2b2Dataset;
 import data.Split;
@@ -19,6 +19,7 @@ public class GibbsVsBaseline {
   public static final int numLabeled = 30;
   public static final int numUnlabeled = 1000;
   public static final int numFolds = 10;
+  public static final int numThreads = Runtime.getRuntime().availableProcessors();
 
   public static void main(String[] args) throws IOException {
 
@@ -28,7 +29,7 @@ public class GibbsVsBaseline {
     System.out.println(out);
   }
 
-  public static double evaluateSampler(int numLabeled) throws FileNotFoundException {
+  public static double evaluateSampler(int numLabeled) throws IOException {
 
     // load labeled data
     I2b2Dataset dataset = new I2b2Dataset();
@@ -39,61 +40,68 @@ public class GibbsVsBaseline {
     I2b2Dataset unlabeled = new I2b2Dataset();
     unlabeled.loadFromCSVFile(dataPath, labelPath, numUnlabeled);
 
-    Split[] splits = dataset.split(numFolds);
-    double cumulativeAccuracy = 0;
+    final I2b2Dataset data = dataset;
+    final I2b2Dataset unlabeledData = unlabeled;
+    final Split[] splits = dataset.split(numFolds);
+    final int numLabeledExamples = numLabeled;
 
-    for(int fold = 0; fold < numFolds; fold++) {
-      Dataset labeled = new Dataset();
-      Dataset nontest = splits[fold].getPoolSet();
-      Dataset test = splits[fold].getTestSet();
+    FoldRunner runner = new FoldRunner(numThreads, 100);
+    FoldResults results = runner.run(numFolds, new FoldRunner.FoldTask() {
+      public double run(int fold, Random random) {
+        Dataset labeled = new Dataset();
+        Dataset nontest = splits[fold].getPoolSet();
+        Dataset test = splits[fold].getTestSet();
 
-      labeled.add(nontest.popRandom(numLabeled, new Random(100)));
-      test.hideLabels();
+        labeled.add(nontest.popRandom(numLabeledExamples, new Random(100)));
+        test.hideLabels();
 
-      Model sampler = new Model(labeled, unlabeled, test, dataset.getLabelAlphabet(), dataset.getFeatureAlphabet());
-      sampler.run();
-      double accuracy = sampler.evaluate();
+        MultiChainSampler sampler = new MultiChainSampler(Model.numChains, MultiChainSampler.getSharedPool(), random.nextLong());
+        double accuracy = sampler.run(labeled, unlabeledData, test, data.getLabelAlphabet(), data.getFeatureAlphabet());
+        System.out.format("fold %d: %d sweeps, r-hat %.3f\n", fold, sampler.getSweeps(), sampler.getRhat());
 
-      test.restoreLabels();
-      cumulativeAccuracy += accuracy;
-    }
+        test.restoreLabels();
+        return accuracy;
+      }
+    });
 
-    return cumulativeAccuracy / numFolds;    
+    return results.getMean();
   }
 
   /**
    * Use labeled data only.
    */
-  public static double evaluateBaseline(int numLabeled) throws FileNotFoundException {
+  public static double evaluateBaseline(int numLabeled) throws IOException {
 
     I2b2Dataset dataset = new I2b2Dataset();
     dataset.loadCSVFile(dataPath, labelPath);
     dataset.makeAlphabets();
 
-    Split[] splits = dataset.split(numFolds);
-    double cumulativeAccuracy = 0;
+    final I2b2Dataset data = dataset;
+    final Split[] splits = dataset.split(numFolds);
+    final int numLabeledExamples = numLabeled;
 
-    for(int fold = 0; fold < numFolds; fold++) {
-      Dataset labeled = new Dataset();
-      Dataset nontest = splits[fold].getPoolSet();
-      Dataset test = splits[fold].getTestSet();
+    FoldRunner runner = new FoldRunner(numThreads, 100);
+    FoldResults results = runner.run(numFolds, new FoldRunner.FoldTask() {
+      public double run(int fold, Random random) {
+        Dataset labeled = new Dataset();
+        Dataset nontest = splits[fold].getPoolSet();
+        Dataset test = splits[fold].getTestSet();
 
-      labeled.add(nontest.popRandom(numLabeled, new Random(100)));
+        labeled.add(nontest.popRandom(numLabeledExamples, new Random(100)));
 
-      labeled.setInstanceClassProbabilityDistribution(new HashSet<String>(dataset.getLabelAlphabet().getStrings()));
-      labeled.setAlphabets(dataset.getLabelAlphabet(), dataset.getFeatureAlphabet());
-      labeled.makeVectors();
+        labeled.setInstanceClassProbabilityDistribution(data.getLabelAlphabet());
+        labeled.setAlphabets(data.getLabelAlphabet(), data.getFeatureAlphabet());
+        labeled.makeVectors();
 
-      EmModel classifier = new EmModel(dataset.getLabelAlphabet(), Constants.defaultLambda);
-      classifier.train(labeled);
+        EmModel classifier = new EmModel(data.getLabelAlphabet(), Constants.defaultLambda);
+        classifier.train(labeled);
 
-      test.setAlphabets(dataset.getLabelAlphabet(), dataset.getFeatureAlphabet());
-      test.makeVectors();
-      double accuracy = classifier.test(test);
+        test.setAlphabets(data.getLabelAlphabet(), data.getFeatureAlphabet());
+        test.makeVectors();
+        return classifier.test(test);
+      }
+    });
 
-      cumulativeAccuracy += accuracy;
-    }
-
-    return cumulativeAccuracy / numFolds;    
+    return results.getMean();
   }  
 }
@@ -1,15 +1,18 @@
 package gibbs;
 
-import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.math.RoundingMode;
-import java.util.HashSet;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.special.Gamma;
 
 import semsup.eval.Constants;
-import cc.mallet.types.Dirichlet;
+import utils.LogMath;
 import data.Alphabet;
 import data.Dataset;
 import data.Instance;
+import data.SparseVector;
 import em.implementation.EmModel;
 
 /**
@@ -19,13 +22,32 @@ import em.implementation.EmModel;
  */
 public class Model {
 
-  public static final int numSamples = 50;
+  // maximum number of sweeps of each chain
+  public static final int numSamples = 200;
+  // sweeps before the first sample is kept
+  public static final int burnIn = 10;
+  // keep every n-th sample after the burn-in
+  public static final int thinning = 1;
+  // chains run by MultiChainSampler
+  public static final int numChains = 4;
+  // MultiChainSampler checks convergence every checkInterval sweeps; it stops
+  // when the potential scale reduction factor (r-hat) falls below maxRhat
+  public static final int checkInterval = 10;
+  public static final double maxRhat = 1.1;
+  private static final double LN10 = Math.log(10);
   public static final boolean sampleThetaAtInit = true;
+  // integrate theta out and sample labels from the counts (see getCollapsedLogProbForClasses())
+  public static final boolean collapsed = true;
+
+  // hyperparameter of the beta (dirichlet for more than two classes) prior over the labels
+  public static final double betaPrior = 1;
+  // hyperparameter of the dirichlet prior over the words of a class
+  public static final double dirichletPrior = 1;
 
-  // hyperparameters of beta distribution
-  public static final double[] betaParams = {1, 1};  
-  // hyperparameters of dirichlet distribution
-  public static final double[] dirichletParams = {1, 1};
+  // hyperparameters for each class; all set to betaPrior and dirichletPrior
+  protected double[] betaParams;
+  protected double[] dirichletParams;
+  private double betaSum;
 
   // number of classes
   protected int numClasses;
@@ -39,7 +61,7 @@ public class Model {
   // number of examples for each class
   protected int[] labelCounts;
   // total word (feature) count in each class
-  private int[] totalClassWords;
+  private double[] totalClassWords;
 
   // p(w|c) for all classes 
   protected double[][] theta;
@@ -49,17 +71,33 @@ public class Model {
   // word to ints mapping
   Alphabet featureAlphabet;
 
+  // source of randomness of this chain
+  private Random random;
+  // draws theta when it is not integrated out (see sampleTheta())
+  private DirichletSampler dirichletSampler;
+
   // may not need a class member
   public Dataset labeled;
   public Dataset unlabeled;
   public Dataset test;
   public Dataset sampled; 
+  // labels assigned to the sampled instances after the burn-in
+  private VoteTally votes;
 
   /**
    * Constructor.
    */
   public Model(Dataset labeled, Dataset unlabeled, Dataset test, Alphabet labelAlphabet, Alphabet featureAlphabet) {
 
+    this(labeled, unlabeled, test, labelAlphabet, featureAlphabet, new Random());
+  }
+
+  /**
+   * Constructor. Specify the source of randomness.
+   */
+  public Model(Dataset labeled, Dataset unlabeled, Dataset test, Alphabet labelAlphabet, Alphabet featureAlphabet, Random random) {
+
+    this.random = random;
     this.labeled = labeled;
     this.unlabeled = unlabeled;
     this.test = test;
@@ -73,9 +111,15 @@ public class Model {
 
     labelCounts = new int[numClasses];
     wordCounts = new double[numClasses][numWords];
-    totalClassWords = new int[numClasses];
+    totalClassWords = new double[numClasses];
 
     theta = new double[numClasses][numWords];
+
+    betaParams = new double[numClasses];
+    dirichletParams = new double[numClasses];
+    Arrays.fill(betaParams, betaPrior);
+    Arrays.fill(dirichletParams, dirichletPrior);
+    betaSum = numClasses * betaPrior;
   }
 
   /**
@@ -84,7 +128,7 @@ public class Model {
   public void initialize() {
 
     // label unlabeled examples
-    labeled.setInstanceClassProbabilityDistribution(new HashSet<String>(labelAlphabet.getStrings()));
+    labeled.setInstanceClassProbabilityDistribution(labelAlphabet);
     labeled.setAlphabets(labelAlphabet, featureAlphabet);
     labeled.makeVectors();
 
@@ -108,21 +152,26 @@ public class Model {
     computeWordCounts(all);
     computeTotalClassWords(all);
 
-    // compute p(w|c)
-    if(sampleThetaAtInit) {
-      sampleTheta();
-    } else {
-      computeTheta();
+    // compute p(w|c); the collapsed sampler does not need it
+    if(! collapsed) {
+      // the chains already run in parallel, so theta is sampled in the chain's thread
+      dirichletSampler = new DirichletSampler(random.nextLong());
+      if(sampleThetaAtInit) {
+        sampleTheta();
+      } else {
+        computeTheta();
+      }
     }
 
     // wrap instances that need to be sampled into a dataset object
     sampled = new Dataset(unlabeled.getInstances(), test.getInstances());
     sampled.setAlphabets(labelAlphabet, featureAlphabet);
     sampled.makeVectors();
+    votes = new VoteTally(sampled.size(), numClasses, burnIn, thinning);
   }
   
   /**
-   * A single sampling iteration.
+   * A single sampling iteration (sweep). Only the non-zero words of each instance are visited.
    */
   public void sample() {
 
@@ -130,38 +179,110 @@ public class Model {
 
       // subtract this instance's word counts and label counts
       int oldLabel = labelAlphabet.getIndex(instance.getLabel());
-      labelCounts[oldLabel]--;
-      for(int word = 0; word < numWords; word++) {
-        Float wordCount = instance.getDimensionValue(word);
-        if(wordCount == null) {
-          continue;
-        }
-        wordCounts[oldLabel][word] -= wordCount;
-      }
+      updateCounts(instance, oldLabel, -1);
 
-      double[] logSum = getUnnormalizedLogProbForClasses(instance); 
+      double[] logSum = collapsed ? getCollapsedLogProbForClasses(instance) : getUnnormalizedLogProbForClasses(instance); 
       double[] p = logToProb(logSum);
-      int newLabel = Math.random() < p[0] ? 0 : 1;
+      int newLabel = sampleLabel(p, random.nextDouble());
       instance.setLabel(labelAlphabet.getString(newLabel));
 
-      // keep track of labels for the test set 
-      // assumption: test set has gold labels in 'temp' field
-      if(instance.getTemp() != null) {
-        instance.addToSequence(newLabel);
+      // add counts back
+      updateCounts(instance, newLabel, 1);
+
+      if(! collapsed) {
+        sampleTheta();
       }
+    }
+  }
 
-      // add counts back
-      labelCounts[newLabel]++;
+  /**
+   * Count the current label of each sampled instance if the labels after
+   * this sweep (counting from 0) are kept (see VoteTally).
+   */
+  public void vote(int sweep) {
+
+    if(votes.isKept(sweep)) {
+      List<Instance> instances = sampled.getInstances();
+      for(int index = 0; index < instances.size(); index++) {
+        votes.add(index, labelAlphabet.getIndex(instances.get(index).getLabel()));
+      }
+    }
+  }
+
+  /**
+   * Label counts of the sampled instances (in the order of sampled).
+   */
+  public VoteTally getVotes() {
+    return votes;
+  }
+
+  /**
+   * Natural log of the probability of the current label assignment and the words,
+   * with theta integrated out: log p(labels) + sum_c log p(words of class c | labels).
+   * The collapsed sampler draws from the conditionals of this joint (see getLabelPrior()).
+   * Takes O(number of classes x number of words) time.
+   */
+  public double logLikelihood() {
+
+    double logP = 0;
+    for(int label = 0; label < numClasses; label++) {
+      logP += Gamma.logGamma(labelCounts[label] + betaParams[label]) - Gamma.logGamma(betaParams[label]);
+    }
+    logP += Gamma.logGamma(betaSum) - Gamma.logGamma(numInstances + betaSum);
+
+    for(int label = 0; label < numClasses; label++) {
+      double alpha = dirichletParams[label];
+      double logGammaAlpha = Gamma.logGamma(alpha);
+      logP += Gamma.logGamma(numWords * alpha) - Gamma.logGamma(totalClassWords[label] + numWords * alpha);
       for(int word = 0; word < numWords; word++) {
-        Float wordCount = instance.getDimensionValue(word);
-        if(wordCount == null) {
-          continue;
+        if(wordCounts[label][word] != 0) {
+          logP += Gamma.logGamma(wordCounts[label][word] + alpha) - logGammaAlpha;
         }
-        wordCounts[newLabel][word] += wordCount;
       }
+    }
+
+    return logP;
+  }
+
+  /**
+   * Add (sign = 1) or subtract (sign = -1) the counts of an instance to / from a class.
+   */
+  private void updateCounts(Instance instance, int label, int sign) {
+
+    labelCounts[label] += sign;
+    SparseVector vector = instance.getVector();
+    for(int i = 0; i < vector.size(); i++) {
+      wordCounts[label][vector.getIndex(i)] += sign * vector.getValue(i);
+      totalClassWords[label] += sign * vector.getValue(i);
+    }
+  }
+
+  /**
+   * Pick the label whose cumulative probability first exceeds u, a uniform draw from [0, 1).
+   */
+  private static int sampleLabel(double[] p, double u) {
 
-      sampleTheta();
+    double cumulative = 0;
+    for(int label = 0; label < p.length - 1; label++) {
+      cumulative += p[label];
+      if(u < cumulative) {
+        return label;
+      }
     }
+    return p.length - 1;
+  }
+
+  /**
+   * p(c) given the labels of the other instances and the beta prior; labelCounts
+   * does not count the instance being sampled. The collapsed sampler uses
+   * (n_c + beta_c) / (N - 1 + sum(beta)), the label term of the conditional of the
+   * joint in logLikelihood(), whose trace MultiChainSampler monitors. Without
+   * collapsing, the numerator is n_c + beta_c - 1 as in equation 49 (see below).
+   */
+  private double getLabelPrior(int label) {
+
+    double count = labelCounts[label] + betaParams[label] - (collapsed ? 0 : 1);
+    return count / (numInstances + betaSum - 1);
   }
 
   /**
@@ -171,21 +292,16 @@ public class Model {
   private double[] getUnnormalizedLogProbForClasses(Instance instance){
 
     double[] logSum = new double[numClasses];
+    SparseVector vector = instance.getVector();
 
     for(int label = 0; label < numClasses; label++) {
 
-      double outer = (labelCounts[label] + betaParams[label] - 1) / 
-          (double)(numInstances + betaParams[0] + betaParams[1] - 1);
+      double outer = getLabelPrior(label);
 
       logSum[label] = Math.log10(outer);
 
-      for(int word = 0; word < numWords; word++) {
-        Float wordCount = instance.getDimensionValue(word);
-        if(wordCount == null) {
-          continue;
-        }
-
-        double inner = wordCount * Math.log10(theta[label][word]);
+      for(int i = 0; i < vector.size(); i++) {
+        double inner = vector.getValue(i) * Math.log10(theta[label][vector.getIndex(i)]);
         logSum[label] += inner;
       }
     }
@@ -194,52 +310,48 @@ public class Model {
   }
 
   /**
-   * Convert unnormalized log probabilities to probabilities for each class.
+   * Same as above with theta integrated out (also derived by Resnik and Hardisty).
+   * With x_w the counts of this instance, n_cw the counts of class c without this
+   * instance, a the dirichlet hyperparameter, T_c = sum_w n_cw, and L = sum_w x_w:
+   * 
+   * p(c|rest) ~ p(c) * G(T_c + V * a) / G(T_c + V * a + L) * prod_w G(n_cw + a + x_w) / G(n_cw + a)
+   * 
+   * where G is the gamma function. The factors for the words with x_w = 0 are 1,
+   * so only the words of this instance are visited. Returns log10 values.
    */
-  public double[] logToProb(double[] unnormalizedClassLogProbs) {
+  private double[] getCollapsedLogProbForClasses(Instance instance) {
 
-    double[] probs = new double[unnormalizedClassLogProbs.length];
-
-    // unnormalized probabilities are often very small, e.g. 10^-802.345
-    // which causes an underflow, so need to use big decimal instead
-    BigDecimal[] unnormalizedClassProbs = new BigDecimal[unnormalizedClassLogProbs.length];
+    double[] logSum = new double[numClasses];
+    SparseVector vector = instance.getVector();
+    double length = vector.sum();
 
-    // we have log(p(c)p(w_0|c)...p(w_n-1|c)) for each class
-    // compute unnormalized probabilities as 10^(p(c)p(w_0|c)...p(w_n-1|c))
     for(int label = 0; label < numClasses; label++) {
-      unnormalizedClassProbs[label] = powerOfTen(unnormalizedClassLogProbs[label]);
-    }
 
-    // compute the normalization constant
-    BigDecimal normalizer = new BigDecimal(0);
-    for(int label = 0; label < numClasses; label++) {
-      normalizer = normalizer.add(unnormalizedClassProbs[label]);
-    }
+      double outer = getLabelPrior(label);
+      double alpha = dirichletParams[label];
+      double total = totalClassWords[label] + numWords * alpha;
 
-    for(int label = 0; label < numClasses; label++) {
-      probs[label] = unnormalizedClassProbs[label].divide(normalizer, RoundingMode.HALF_UP).doubleValue();
+      double logP = Math.log(outer) + Gamma.logGamma(total) - Gamma.logGamma(total + length);
+      double[] classWordCounts = wordCounts[label];
+      for(int i = 0; i < vector.size(); i++) {
+        double count = classWordCounts[vector.getIndex(i)] + alpha;
+        logP += Gamma.logGamma(count + vector.getValue(i)) - Gamma.logGamma(count);
+      }
+
+      logSum[label] = logP / LN10;
     }
 
-    return probs;
+    return logSum;
   }
 
   /**
-   * Calculate 10^exponent when y is very small and fractional.
-   * Basically split exponent into its integer i and fractional f parts.
-   * I.e. 10^exponent = 10^(i + f) = 10^i * 10^f
+   * Convert unnormalized log probabilities to probabilities for each class.
+   * Unnormalized probabilities are often very small, e.g. 10^-802.345, 
+   * so the normalization is done in log space to avoid an underflow.
    */
-  private static BigDecimal powerOfTen(double exponent) {
-
-    BigDecimal exponentAsBigDecimal = new BigDecimal(String.valueOf(exponent));
-    BigDecimal integerPart = new BigDecimal(exponentAsBigDecimal.intValue());
-    BigDecimal fractionalPart = exponentAsBigDecimal.subtract(integerPart);
-
-    BigDecimal tenToIntegerPart = new BigDecimal(BigInteger.valueOf(10), -1 * integerPart.intValue());
-    BigDecimal tenToFractionalPart = new BigDecimal(Math.pow(10, fractionalPart.doubleValue()));
-
-    BigDecimal result = tenToIntegerPart.multiply(tenToFractionalPart);
+  public double[] logToProb(double[] unnormalizedClassLogProbs) {
 
-    return result;
+    return LogMath.logToProb(unnormalizedClassLogProbs);
   }
 
   /**
@@ -264,37 +376,26 @@ public class Model {
   }
   
   /**
-   * Sample thetas from Dirichlet distribution.
+   * Sample thetas from Dirichlet distribution. The draws are written into theta.
    */
   public void sampleTheta() {
-    
-    for(int label = 0; label < numClasses; label++) {
-      double[] params = new double[numWords];
-      for(int word = 0; word < numWords; word++) {
-        params[word] = wordCounts[label][word] + dirichletParams[label];
-      }
-      Dirichlet dirichlet = new Dirichlet(params);
-      theta[label] = dirichlet.nextDistribution();
-    }
+
+    dirichletSampler.sample(wordCounts, dirichletParams, theta);
   }
   
   /**
    * Compute feature frequency n x m matrix, where
    * n: number of classes, m: number of dimensions
    * 
-   * TODO: Make more efficient by changing the inner loop
-   * to iterate over feature names (later converted to dimensions)
-   * instead of all dimensions.
+   * Only the non-zero entries of each instance's vector are visited.
    */
   public void computeWordCounts(Dataset dataset) {
 
     for(Instance instance : dataset.getInstances()) {
-      for(int index = 0; index < numWords; index++) {
-        int label = labelAlphabet.getIndex(instance.getLabel());
-        Float value = instance.getDimensionValue(index); 
-        if(value != null) {
-          wordCounts[label][index] += value;
-        }
+      int label = labelAlphabet.getIndex(instance.getLabel());
+      SparseVector vector = instance.getVector();
+      for(int i = 0; i < vector.size(); i++) {
+        wordCounts[label][vector.getIndex(i)] += vector.getValue(i);
       }
     }
   }
@@ -311,51 +412,53 @@ public class Model {
   }
 
   /**
-   * Compute total number of words in each class.
+   * Compute total number of words in each class. Only the words 
+   * in the feature alphabet (i.e. in the vectors) are counted.
    */
   public void computeTotalClassWords(Dataset dataset) {
 
     for(Instance instance : dataset.getInstances()) {
       int label = labelAlphabet.getIndex(instance.getLabel());
-      totalClassWords[label] += instance.getTotalMass();
+      totalClassWords[label] += instance.getVector().sum();
     }
   }
 
   /**
-   * Run sampler.
+   * Run a single chain for numSamples sweeps (see MultiChainSampler for multiple chains).
    */
   public void run() {
 
     initialize();
-    for(int sample = 0; sample < numSamples; sample++) {
+    for(int sweep = 0; sweep < numSamples; sweep++) {
       sample();
+      vote(sweep);
     }
   }
 
   /**
-   * Produce final label by averaging labels obtained from samples.
+   * Produce final label by counting labels obtained from samples.
    * Evaluate the accuracy on the test set.
    */
   public double evaluate() {
 
-    int correct = 0;
+    return evaluate(votes);
+  }
 
-    for(Instance instance : sampled.getInstances()) {
-      // only evaluate instances from test set
-      if(instance.getTemp() != null) {
-        int cumulative = 0;
-        for(int label : instance.getSequence()) {
-          cumulative += label;
-        }
+  /**
+   * Same as above using the given label counts of the sampled 
+   * instances, e.g. the counts of several chains added together.
+   */
+  public double evaluate(VoteTally votes) {
 
-        int prediction;
-        if(((double) cumulative / instance.getSequence().size()) < 0.5) {
-          prediction = 0;
-        } else {
-          prediction = 1;
-        }
+    int correct = 0;
+    List<Instance> instances = sampled.getInstances();
 
-        if(labelAlphabet.getString(prediction).equals(instance.getTemp())) {
+    for(int index = 0; index < instances.size(); index++) {
+      // only evaluate instances from test set
+      // assumption: test set has gold labels in 'temp' field
+      if(instances.get(index).getTemp() != null) {
+        int prediction = votes.getPrediction(index);
+        if(labelAlphabet.getString(prediction).equals(instances.get(index).getTemp())) {
           correct++;
         }
       }
@@ -363,4 +466,4 @@ public class Model {
 
     return (double) correct / test.size();
   }
-}
\ No newline at end of file
+}
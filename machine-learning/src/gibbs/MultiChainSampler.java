@@ -0,0 +1,222 @@
+package gibbs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import semsup.eval.Constants;
+import utils.Parallel;
+import cv.FoldRunner;
+import data.Alphabet;
+import data.Dataset;
+
+/**
+ * Runs several independent chains of the gibbs sampler concurrently and pools
+ * their samples. Each chain labels its own copies of the instances and has its
+ * own source of randomness, so the result does not depend on the number of threads.
+ *
+ * The chains are run in rounds of Model.checkInterval sweeps. After each round
+ * the Gelman-Rubin potential scale reduction factor (r-hat) of the log-likelihood
+ * (see Model.logLikelihood()) is computed over the sweeps after the burn-in;
+ * sampling stops once it falls below Model.maxRhat or after Model.numSamples sweeps.
+ *
+ * When the folds of a cross-validation run concurrently (see cv.FoldRunner), each
+ * fold task waits for its chains, so the chains must not run on the fold pool; the
+ * drivers run them on getSharedPool(), one pool for all folds and configurations.
+ * Since the chains label copies, the datasets passed to run() can be shared by
+ * concurrent folds.
+ *
+ * @author dmitriy dligach
+ */
+public class MultiChainSampler {
+
+  // runs the chains of all samplers that use it (see getSharedPool())
+  private static ExecutorService sharedPool;
+
+  private int numChains;
+  private ExecutorService executor;
+  private long seed;
+
+  // if not null, the pooled label marginals are written here after every round
+  private File snapshotFile;
+
+  // number of sweeps and r-hat of the last run
+  private int sweeps;
+  private double rHat;
+
+  public MultiChainSampler(int numChains, ExecutorService executor, long seed) {
+
+    this.numChains = numChains;
+    this.executor = executor;
+    this.seed = seed;
+  }
+
+  /**
+   * Run the chains and return the accuracy on the test set of the labels
+   * pooled across chains. The test set must have its gold labels hidden
+   * (see Dataset.hideLabels()).
+   */
+  public double run(Dataset labeled, Dataset unlabeled, Dataset test, Alphabet labelAlphabet, Alphabet featureAlphabet) {
+
+    final Model[] chains = new Model[numChains];
+    for(int chain = 0; chain < numChains; chain++) {
+      chains[chain] = new Model(
+          Dataset.viewOf(labeled.getInstances()),
+          Dataset.viewOf(unlabeled.getInstances()),
+          Dataset.viewOf(test.getInstances()),
+          labelAlphabet,
+          featureAlphabet,
+          new Random(FoldRunner.foldSeed(seed, chain)));
+    }
+
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for(final Model chain : chains) {
+      tasks.add(new Callable<Void>() {
+        public Void call() {
+          chain.initialize();
+          return null;
+        }
+      });
+    }
+    Parallel.invokeAll(executor, tasks);
+
+    final double[][] traces = new double[numChains][Model.numSamples];
+    sweeps = 0;
+    rHat = Double.NaN;
+    while(sweeps < Model.numSamples) {
+      final int from = sweeps;
+      final int to = Math.min(sweeps + Model.checkInterval, Model.numSamples);
+
+      tasks = new ArrayList<Callable<Void>>();
+      for(int chain = 0; chain < numChains; chain++) {
+        final Model model = chains[chain];
+        final double[] trace = traces[chain];
+        tasks.add(new Callable<Void>() {
+          public Void call() {
+            for(int sweep = from; sweep < to; sweep++) {
+              model.sample();
+              // r-hat only uses the sweeps after the burn-in
+              if(sweep >= Model.burnIn) {
+                trace[sweep] = model.logLikelihood();
+              }
+              model.vote(sweep);
+            }
+            return null;
+          }
+        });
+      }
+      Parallel.invokeAll(executor, tasks);
+      sweeps = to;
+      if(snapshotFile != null) {
+        writeSnapshot(chains);
+      }
+
+      // need at least two chains and two sweeps after the burn-in
+      if(numChains > 1 && sweeps - Model.burnIn > 1) {
+        rHat = gelmanRubin(traces, Model.burnIn, sweeps);
+        if(rHat < Model.maxRhat) {
+          break;
+        }
+      }
+    }
+
+    // predict the label of each test instance from the samples of all chains
+    return chains[0].evaluate(pool(chains));
+  }
+
+  /**
+   * Add up the label counts of all chains.
+   */
+  private static VoteTally pool(Model[] chains) {
+
+    VoteTally pooled = new VoteTally(
+        chains[0].getVotes().getNumberOfInstances(), chains[0].numClasses, Model.burnIn, Model.thinning);
+    for(Model chain : chains) {
+      pooled.add(chain.getVotes());
+    }
+    return pooled;
+  }
+
+  /**
+   * Write the pooled label marginals after the sweeps run so far. A failed
+   * write is reported and does not stop the sampler.
+   */
+  private void writeSnapshot(Model[] chains) {
+
+    try {
+      pool(chains).writeSnapshot(snapshotFile, sweeps);
+    } catch (IOException e) {
+      System.err.println("cannot write " + snapshotFile + ": " + e);
+    }
+  }
+
+  /**
+   * Potential scale reduction factor of the values traces[chain][from..to-1]:
+   * sqrt(((n - 1) / n * W + B / n) / W), where n is the number of values per chain,
+   * W is the mean of the within-chain variances, and B / n is the variance of the
+   * chain means. Values close to 1 indicate that the chains have mixed.
+   */
+  public static double gelmanRubin(double[][] traces, int from, int to) {
+
+    int m = traces.length;
+    int n = to - from;
+
+    double[] means = new double[m];
+    double grandMean = 0;
+    for(int chain = 0; chain < m; chain++) {
+      for(int i = from; i < to; i++) {
+        means[chain] += traces[chain][i];
+      }
+      means[chain] /= n;
+      grandMean += means[chain] / m;
+    }
+
+    double between = 0;
+    double within = 0;
+    for(int chain = 0; chain < m; chain++) {
+      between += (means[chain] - grandMean) * (means[chain] - grandMean);
+      for(int i = from; i < to; i++) {
+        within += (traces[chain][i] - means[chain]) * (traces[chain][i] - means[chain]);
+      }
+    }
+    between = between * n / (m - 1);
+    within = within / (m * (n - 1));
+
+    if(within == 0) {
+      return between == 0 ? 1 : Double.POSITIVE_INFINITY;
+    }
+    return Math.sqrt(((n - 1.0) / n * within + between / n) / within);
+  }
+
+  /**
+   * Write the pooled label marginals of the sampled instances (unlabeled, then test)
+   * to a file after every round of sweeps (see VoteTally.writeSnapshot()).
+   */
+  public void setSnapshotFile(File snapshotFile) {
+    this.snapshotFile = snapshotFile;
+  }
+
+  /**
+   * Pool of Constants.chainThreads threads shared by the chains of all folds and
+   * configurations. Its threads are daemon threads, so it is never shut down.
+   */
+  public static synchronized ExecutorService getSharedPool() {
+
+    if(sharedPool == null) {
+      sharedPool = Parallel.newPool(Constants.chainThreads);
+    }
+    return sharedPool;
+  }
+
+  public int getSweeps() {
+    return sweeps;
+  }
+
+  public double getRhat() {
+    return rHat;
+  }
+}
@@ -0,0 +1,119 @@
+package gibbs;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * Counts the labels that the sampler assigned to each instance. Only the
+ * sweeps after the burn-in are counted, and of those only every n-th one
+ * (thinning). The posterior label marginals of an instance are its counts
+ * divided by the number of counted sweeps.
+ *
+ * @author dmitriy dligach
+ */
+public class VoteTally {
+
+  private int numClasses;
+  private int burnIn;
+  private int thinning;
+
+  // votes[instance][label] is the number of counted sweeps that assigned the label
+  private int[][] votes;
+  // number of counted sweeps for each instance
+  private int[] totals;
+
+  public VoteTally(int numInstances, int numClasses, int burnIn, int thinning) {
+
+    this.numClasses = numClasses;
+    this.burnIn = burnIn;
+    this.thinning = thinning;
+
+    votes = new int[numInstances][numClasses];
+    totals = new int[numInstances];
+  }
+
+  /**
+   * True if the labels after the given sweep (counting from 0) are counted.
+   */
+  public boolean isKept(int sweep) {
+    return sweep >= burnIn && (sweep - burnIn) % thinning == 0;
+  }
+
+  public void add(int instance, int label) {
+
+    votes[instance][label]++;
+    totals[instance]++;
+  }
+
+  /**
+   * Add the votes of another tally of the same instances, e.g. from another chain.
+   */
+  public void add(VoteTally other) {
+
+    for(int instance = 0; instance < votes.length; instance++) {
+      for(int label = 0; label < numClasses; label++) {
+        votes[instance][label] += other.votes[instance][label];
+      }
+      totals[instance] += other.totals[instance];
+    }
+  }
+
+  public int getVotes(int instance, int label) {
+    return votes[instance][label];
+  }
+
+  public int getTotal(int instance) {
+    return totals[instance];
+  }
+
+  /**
+   * Fraction of the counted sweeps that assigned the label to the instance.
+   */
+  public double getMarginal(int instance, int label) {
+    return (double) votes[instance][label] / totals[instance];
+  }
+
+  /**
+   * Label with the most votes. Ties go to the label with the larger index
+   * (for two classes: label 1 unless label 0 has the majority).
+   */
+  public int getPrediction(int instance) {
+
+    int prediction = 0;
+    for(int label = 1; label < numClasses; label++) {
+      if(votes[instance][label] >= votes[instance][prediction]) {
+        prediction = label;
+      }
+    }
+    return prediction;
+  }
+
+  public int getNumberOfInstances() {
+    return votes.length;
+  }
+
+  /**
+   * Write the marginals, one line per instance: <instance> <p(label 0)> ... <p(label n-1)>.
+   * The first line is a comment with the sweep number. The file is written next to the
+   * target and then moved over it, so an interrupted write leaves the previous snapshot.
+   */
+  public void writeSnapshot(File file, int sweep) throws IOException {
+
+    StringBuilder output = new StringBuilder();
+    output.append(String.format("# sweep %d\n", sweep));
+    for(int instance = 0; instance < votes.length; instance++) {
+      output.append(instance);
+      for(int label = 0; label < numClasses; label++) {
+        output.append(String.format(" %.4f", totals[instance] == 0 ? 0 : getMarginal(instance, label)));
+      }
+      output.append("\n");
+    }
+
+    File temp = new File(file.getPath() + ".tmp");
+    Files.write(output, temp, Charsets.UTF_8);
+    Files.move(temp, file);
+  }
+}
@@ -0,0 +1,70 @@
+package gibbs.test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import utils.Parallel;
+import cc.mallet.types.Dirichlet;
+import gibbs.DirichletSampler;
+
+/**
+ * Time theta draws for two classes over a 50k word vocabulary: mallet's
+ * dirichlet sampler (as gibbs.Model used to do it), DirichletSampler in
+ * the calling thread, and DirichletSampler on a thread pool.
+ *
+ * Arguments: [vocabulary size [, draws]]
+ */
+public class BenchmarkDirichlet {
+
+  public static void main(String[] args) {
+
+    int numWords = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+    int numDraws = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    int numClasses = 2;
+    double[] alpha = {1, 1};
+
+    Random random = new Random(0);
+    double[][] counts = new double[numClasses][numWords];
+    for(int label = 0; label < numClasses; label++) {
+      for(int word = 0; word < numWords; word++) {
+        counts[label][word] = random.nextInt(10) == 0 ? random.nextInt(20) : 0;
+      }
+    }
+    double[][] theta = new double[numClasses][numWords];
+
+    long start = System.currentTimeMillis();
+    for(int draw = 0; draw < numDraws; draw++) {
+      for(int label = 0; label < numClasses; label++) {
+        double[] params = new double[numWords];
+        for(int word = 0; word < numWords; word++) {
+          params[word] = counts[label][word] + alpha[label];
+        }
+        theta[label] = new Dirichlet(params).nextDistribution();
+      }
+    }
+    report("mallet", numDraws, start);
+
+    DirichletSampler serial = new DirichletSampler(0);
+    start = System.currentTimeMillis();
+    for(int draw = 0; draw < numDraws; draw++) {
+      serial.sample(counts, alpha, theta);
+    }
+    report("serial", numDraws, start);
+
+    int threads = Runtime.getRuntime().availableProcessors();
+    ExecutorService executor = Parallel.newPool(threads);
+    DirichletSampler parallel = new DirichletSampler(0, executor);
+    start = System.currentTimeMillis();
+    for(int draw = 0; draw < numDraws; draw++) {
+      parallel.sample(counts, alpha, theta);
+    }
+    report(threads + " threads", numDraws, start);
+    executor.shutdown();
+  }
+
+  private static void report(String name, int numDraws, long start) {
+
+    long time = System.currentTimeMillis() - start;
+    System.out.format("%-12s %6d ms, %.2f ms per draw of theta\n", name, time, (double) time / numDraws);
+  }
+}
@@ -0,0 +1,92 @@
+package gibbs.test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import utils.Parallel;
+import cc.mallet.types.Dirichlet;
+import gibbs.DirichletSampler;
+
+/**
+ * Compare the moments of the gamma and dirichlet draws with the exact moments
+ * and with the moments of mallet's dirichlet sampler.
+ */
+public class TestDirichletSampler {
+
+  public static final int numDraws = 20000;
+
+  public static void main(String[] args) {
+
+    boolean passed = true;
+
+    // gamma(k, 1) has mean k and variance k
+    Random random = new Random(0);
+    for(double shape : new double[] {0.1, 0.5, 1, 2.5, 30}) {
+      double sum = 0;
+      double sumOfSquares = 0;
+      for(int draw = 0; draw < numDraws; draw++) {
+        double x = DirichletSampler.nextGamma(random, shape);
+        sum += x;
+        sumOfSquares += x * x;
+      }
+      double mean = sum / numDraws;
+      double variance = sumOfSquares / numDraws - mean * mean;
+      boolean ok = Math.abs(mean - shape) < 4 * Math.sqrt(shape / numDraws) && Math.abs(variance / shape - 1) < 0.1;
+      System.out.format("gamma(%4.1f): mean %.4f variance %.4f %s\n", shape, mean, variance, ok ? "ok" : "failed");
+      passed = passed && ok;
+    }
+
+    // dirichlet(counts + alpha) over a small vocabulary with a wide range of parameters
+    int numWords = 10000;
+    double[][] counts = new double[1][numWords];
+    for(int word = 0; word < numWords; word++) {
+      counts[0][word] = word % 100 == 0 ? 50 * (word / 100 % 7) : word % 3;
+    }
+    double[] alpha = {0.5};
+    double[] params = new double[numWords];
+    double total = 0;
+    for(int word = 0; word < numWords; word++) {
+      params[word] = counts[0][word] + alpha[0];
+      total += params[word];
+    }
+
+    ExecutorService executor = Parallel.newPool(4);
+    DirichletSampler sampler = new DirichletSampler(1, executor);
+    Dirichlet mallet = new Dirichlet(params);
+    double[][] theta = new double[1][numWords];
+    double[][] moments = new double[4][numWords];
+    int samples = 2000;
+    for(int draw = 0; draw < samples; draw++) {
+      sampler.sample(counts, alpha, theta);
+      double[] reference = mallet.nextDistribution();
+      for(int word = 0; word < numWords; word++) {
+        moments[0][word] += theta[0][word];
+        moments[1][word] += theta[0][word] * theta[0][word];
+        moments[2][word] += reference[word];
+        moments[3][word] += reference[word] * reference[word];
+      }
+    }
+    executor.shutdown();
+
+    // compare the means and variances of the components with large parameters
+    double worstOurs = 0;
+    double worstMallet = 0;
+    for(int word = 0; word < numWords; word++) {
+      if(params[word] < 10) {
+        continue;
+      }
+      double exactMean = params[word] / total;
+      double exactVariance = params[word] * (total - params[word]) / (total * total * (total + 1));
+      double mean = moments[0][word] / samples;
+      double variance = moments[1][word] / samples - mean * mean;
+      double malletMean = moments[2][word] / samples;
+      double malletVariance = moments[3][word] / samples - malletMean * malletMean;
+      worstOurs = Math.max(worstOurs, Math.max(Math.abs(mean / exactMean - 1), Math.abs(variance / exactVariance - 1)));
+      worstMallet = Math.max(worstMallet, Math.max(Math.abs(malletMean / exactMean - 1), Math.abs(malletVariance / exactVariance - 1)));
+    }
+    System.out.format("largest relative error of dirichlet moments: %.3f (mallet: %.3f)\n", worstOurs, worstMallet);
+    passed = passed && worstOurs < 0.15 && worstOurs < 2 * worstMallet + 0.02;
+
+    System.out.println(passed ? "passed" : "failed");
+  }
+}
@@ -12,4 +12,7 @@ public class Constants {
 	
 	public static final int rndSeedForSplitting = 0;
 	public static final int rndSeedForSeeding = 0;
+	
+	// number of instances selected from the pool in each round
+	public static final int batchSize = 1;
 }
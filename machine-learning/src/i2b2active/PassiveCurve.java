@@ -6,6 +6,7 @@ import java.util.Random;
 import classifier.NaiveBayesClassifier;
 import cv.LearningCurve;
 import data.Dataset;
+import data.Instance;
 import data.I2b2Dataset;
 import data.Split;
 
@@ -16,6 +17,9 @@ public class PassiveCurve {
 		I2b2Dataset dataset = new I2b2Dataset();
 		dataset.loadCSVFile(Constants.dataFile, Constants.labelFile);
 		dataset.makeAlphabets();
+		// vectorize once using the alphabet of the entire dataset; the
+		// splits are views of the dataset, so they share the vectors
+		dataset.makeVectors();
 		
 		// splits should be the same for random sampling and active learning
 		Split[] splits = dataset.split(Constants.totalFolds);
@@ -31,17 +35,15 @@ public class PassiveCurve {
 			// seed (should be the same for active learning and random sampling)
 			train.add(pool.popRandom(Constants.seedSize, new Random(Constants.rndSeedForSeeding)));
 			
+			// the model is updated with each new example instead of being retrained
+			NaiveBayesClassifier classifier = new NaiveBayesClassifier(dataset.getLabelAlphabet());
+			classifier.initialize(dataset.getFeatureAlphabet().size());
+			for(Instance instance : train.getInstances()) {
+				classifier.addInstance(instance);
+			}
+			
 			while(true) {
-				NaiveBayesClassifier classifier = new NaiveBayesClassifier(dataset.getLabelAlphabet());
-				
-				// train a model
-				train.makeAlphabets();
-				train.makeVectors();
-				classifier.train(train);
-				
 				// get the model's performance on the test set
-				test.setAlphabets(train.getLabelAlphabet(), train.getFeatureAlphabet());
-				test.makeVectors();
 				double accuracy = classifier.test(test);
 			
 				// record performance at this size of training set
@@ -52,8 +54,11 @@ public class PassiveCurve {
 					break;
 				}
 				
-				// add a randoml example
-				train.add(pool.popRandom(1, new Random())); 
+				// add a batch of random examples (same batch size as active learning)
+				for(Instance instance : pool.popRandom(Math.min(Constants.batchSize, pool.size()), new Random())) {
+					train.add(instance);
+					classifier.addInstance(instance);
+				}
 			}
 		}
 		
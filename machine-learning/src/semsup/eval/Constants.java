@@ -16,11 +16,20 @@ public class Constants {
   public static int iterations;
   public static int rndSeed;
   public static double defaultLambda;
+  public static int emThreads;
+  public static int foldThreads;
+  public static int schedulerThreads;
+  // threads shared by the chains of the gibbs sampler (see gibbs.MultiChainSampler)
+  public static int chainThreads = 1;
+  public static boolean warmStart;
+  public static double tolerance;
+  public static int patience;
    
   public static boolean gridSearch;
   public static boolean conservativeSearch;
   public static int devFolds;
   public static int devIterations;
+  public static int gridThreads;
   public static List<Float> lambdas = new LinkedList<Float>(); 
   
   public static List<String> phenotypes = new LinkedList<String>();
@@ -42,6 +51,7 @@ public class Constants {
   public static String t2dTargetLabel = "\"no\"";
   
 	public static String outputDir;
+	public static String resultFile;
 	
 	/**
 	 * Read constants from a properties file.
@@ -63,11 +73,20 @@ public class Constants {
     iterations = Integer.parseInt((String) properties.get("iterations"));
     rndSeed = Integer.parseInt((String) properties.get("rndSeed"));
     defaultLambda = Double.parseDouble((String) properties.get("defaultLambda"));
+    emThreads = Integer.parseInt(properties.getProperty("emThreads", "1"));
+    foldThreads = Integer.parseInt(properties.getProperty("foldThreads", "1"));
+    schedulerThreads = Integer.parseInt(properties.getProperty(
+        "schedulerThreads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+    chainThreads = Integer.parseInt(properties.getProperty("chainThreads", "1"));
+    warmStart = Boolean.parseBoolean(properties.getProperty("warmStart", "false"));
+    tolerance = Double.parseDouble(properties.getProperty("tolerance", "0"));
+    patience = Integer.parseInt(properties.getProperty("patience", "1"));
     
     gridSearch = Boolean.parseBoolean((String) properties.get("gridSearch"));
     conservativeSearch = Boolean.parseBoolean((String) properties.getProperty("conservativeSearch"));
     devFolds = Integer.parseInt((String) properties.get("devFolds"));
     devIterations = Integer.parseInt((String) properties.get("devIterations"));
+    gridThreads = Integer.parseInt(properties.getProperty("gridThreads", "1"));
     for(String lambda : ((String) properties.get("lambdas")).split(",")) {
       lambdas.add(Float.parseFloat(lambda));
     }
@@ -90,6 +109,7 @@ public class Constants {
     t2dLabels = dataDir + (String) properties.get("t2dLabels");
     
     outputDir = (String) properties.get("outputDir");
+    resultFile = properties.getProperty("resultFile", outputDir + "results.txt");
     if(verbose) {print();}
 	}
 	
@@ -101,12 +121,20 @@ public class Constants {
 	  System.out.format("%15s %d\n", "folds", folds);
 	  System.out.format("%15s %d\n", "step", step);
 	  System.out.format("%15s %d\n", "iterations", iterations);
+	  System.out.format("%15s %d\n", "em threads", emThreads);
+	  System.out.format("%15s %d\n", "fold threads", foldThreads);
+	  System.out.format("%15s %d\n", "sched threads", schedulerThreads);
+	  System.out.format("%15s %d\n", "chain threads", chainThreads);
+	  System.out.format("%15s %b\n", "warm start", warmStart);
+	  System.out.format("%15s %s\n", "tolerance", tolerance);
+	  System.out.format("%15s %d\n", "patience", patience);
 	  System.out.format("%15s %s\n", "phenotypes", phenotypes);
 	  System.out.format("%15s %s\n", "unlabeled sizes", unlabeledSizes);
 	  
 	  if(gridSearch) {
 	    System.out.format("%15s %d\n", "dev folds", devFolds);
 	    System.out.format("%15s %d\n", "dev iterations", devIterations);
+	    System.out.format("%15s %d\n", "grid threads", gridThreads);
 	    System.out.format("%15s %s\n", "lambdas", lambdas);
 	  } else {
 	    System.out.format("%15s %f\n", "default lambda", defaultLambda);
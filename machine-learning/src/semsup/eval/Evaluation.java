@@ -1,10 +1,12 @@
 package semsup.eval;
 
-import java.io.FileNotFoundException;
-import java.util.HashSet;
+import java.io.IOException;
 import java.util.Random;
 
+import cv.FoldResults;
+import cv.FoldRunner;
 import data.Dataset;
+import data.DatasetRegistry;
 import data.I2b2Dataset;
 import data.Split;
 import em.implementation.EmModel;
@@ -13,44 +15,67 @@ public class Evaluation {
 
   /**
    * Baseline evaluation for semi-supervised learning. Train a model
-   * using labeled data only and returned the performance for each fold. 
+   * using labeled data only and return the performance for each fold. 
    */
-  public static double[] evaluateBaseline(Configuration configuration) {
+  public static FoldResults evaluateBaseline(Configuration configuration) {
 
     I2b2Dataset dataset = new I2b2Dataset();
     try {
-      dataset.loadCSVFile(configuration.dataPath, configuration.labelPath);
-    } catch (FileNotFoundException e) {
+      dataset = loadLabeled(configuration);
+    } catch (IOException e) {
       System.err.println("could not load data: " + configuration.dataPath);
     }
+
+    final I2b2Dataset data = dataset;
+    final Split[] splits = dataset.split(Constants.folds);
+    final int numLabeled = configuration.numLabeled;
+
+    FoldRunner runner = new FoldRunner(Constants.foldThreads, Constants.rndSeed);
+    return runner.run(Constants.folds, new FoldRunner.FoldTask() {
+      public double run(int fold, Random random) {
+        return evaluateBaselineFold(data, splits[fold], numLabeled);
+      }
+    });
+  }
+
+  /**
+   * Train a model using numLabeled examples from the pool set of a split. 
+   * Return its accuracy on the test set of the split.
+   */
+  public static double evaluateBaselineFold(I2b2Dataset dataset, Split split, int numLabeled) {
+
+    Dataset labeled = new Dataset();
+    Dataset nontest = split.getPoolSet();
+    Dataset test = split.getTestSet();
+
+    labeled.add(nontest.popRandom(numLabeled, new Random(Constants.rndSeed)));
+
+    labeled.setInstanceClassProbabilityDistribution(dataset.getLabelAlphabet());
+    labeled.setAlphabets(dataset.getLabelAlphabet(), dataset.getFeatureAlphabet());
+    labeled.makeVectors();
+
+    EmModel classifier = new EmModel(dataset.getLabelAlphabet(), Constants.defaultLambda);
+    classifier.train(labeled);
+
+    test.setAlphabets(dataset.getLabelAlphabet(), dataset.getFeatureAlphabet());
+    test.makeVectors();
+    return classifier.test(test);
+  }
+
+  /**
+   * Get the labeled data of a configuration (the file is read only once)
+   * with its labels remapped and its label alphabet made.
+   */
+  public static I2b2Dataset loadLabeled(Configuration configuration) throws IOException {
+
+    I2b2Dataset dataset = DatasetRegistry.getLabeled(configuration.dataPath, configuration.labelPath);
     if(configuration.sourceLabels != null) {
       dataset.mapLabels(configuration.sourceLabels, configuration.targetLabel);
     }
-    // make alphabets now, after labels were potentially remapped 
-    dataset.makeAlphabets();
-
-    Split[] splits = dataset.split(Constants.folds);
-    double[] foldAccuracy = new double[Constants.folds];
-    
-    for(int fold = 0; fold < Constants.folds; fold++) {
-      Dataset labeled = new Dataset();
-      Dataset nontest = splits[fold].getPoolSet();
-      Dataset test = splits[fold].getTestSet();
-
-      labeled.add(nontest.popRandom(configuration.numLabeled, new Random(Constants.rndSeed)));
-
-      labeled.setInstanceClassProbabilityDistribution(new HashSet<String>(dataset.getLabelAlphabet().getStrings()));
-      labeled.setAlphabets(dataset.getLabelAlphabet(), dataset.getFeatureAlphabet());
-      labeled.makeVectors();
-      
-      EmModel classifier = new EmModel(dataset.getLabelAlphabet(), Constants.defaultLambda);
-      classifier.train(labeled);
- 
-      test.setAlphabets(dataset.getLabelAlphabet(), dataset.getFeatureAlphabet());
-      test.makeVectors();
-      foldAccuracy[fold] = classifier.test(test);
-    }
+    // make label alphabet now, after labels were potentially remapped;
+    // the feature alphabet (and the vectors) come from the registry 
+    dataset.makeLabelAlphabet();
 
-    return foldAccuracy;    
-  }  
+    return dataset;
+  }
 }
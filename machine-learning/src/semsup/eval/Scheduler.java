@@ -0,0 +1,304 @@
+package semsup.eval;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.math3.stat.StatUtils;
+
+import utils.Parallel;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import data.DatasetRegistry;
+import data.I2b2Dataset;
+import data.Split;
+import em.eval.EvaluatePhenotype;
+
+/**
+ * Run the experiments for all phenotypes on a fixed size thread pool.
+ * Every (phenotype, labeled size, unlabeled size, fold) cell is a separate
+ * task, so the threads stay busy until the last cell is done.
+ *
+ * The accuracy of each cell is appended to a result file as soon as the cell
+ * is done. A restarted run reads the result file and skips the cells that are
+ * already in it, so delete the file when the experiment settings change.
+ * With warm start (see EvaluatePhenotype.evaluateFold()), the first cell that
+ * a restarted run evaluates in each chain starts from scratch since the models
+ * of the previous run are not saved.
+ * When all cells are done, the output file of each phenotype is written in
+ * the same format as EvaluatePhenotype writes it.
+ *
+ * @author dmitriy dligach
+ */
+public class Scheduler {
+
+  private String resultFile;
+  private int threads;
+
+  // accuracy of each completed cell
+  private Map<String, Double> results;
+  private Writer writer;
+  private int numCompleted;
+  private int numToRun;
+
+  public Scheduler(String resultFile, int threads) {
+    this.resultFile = resultFile;
+    this.threads = threads;
+  }
+
+  /**
+   * Run the cells that are not in the result file. Then write the output files.
+   */
+  public void run() throws IOException {
+
+    results = new ConcurrentHashMap<String, Double>(readResults(resultFile));
+
+    // labeled data, folds and evaluation of each phenotype that has cells to run
+    Map<String, I2b2Dataset> datasets = new HashMap<String, I2b2Dataset>();
+    Map<String, Split[]> splits = new HashMap<String, Split[]>();
+    Map<String, EvaluatePhenotype> evaluations = new LinkedHashMap<String, EvaluatePhenotype>();
+    // with warm start the cells of a phenotype, unlabeled size, and fold
+    // form a chain that runs in the order of the labeled sizes
+    Map<String, CellTask> tasks = new LinkedHashMap<String, CellTask>();
+    int numCells = 0;
+
+    for(int labeled = Constants.step; labeled < Constants.maxLabeled; labeled += Constants.step) {
+      for(String phenotype : Constants.phenotypes) {
+        for(Configuration configuration : Configuration.createConfigurations(phenotype, labeled)) {
+          for(int fold = 0; fold < Constants.folds; fold++) {
+            String cell = getCell(phenotype, configuration, fold);
+            if(results.containsKey(cell)) {
+              continue;
+            }
+            if(! datasets.containsKey(phenotype)) {
+              // loading and splitting is done once and before any task runs
+              I2b2Dataset dataset = Evaluation.loadLabeled(configuration);
+              datasets.put(phenotype, dataset);
+              splits.put(phenotype, dataset.split(Constants.folds));
+              evaluations.put(phenotype, new EvaluatePhenotype(phenotype));
+            }
+            String chain = cell;
+            if(Constants.warmStart && configuration.numUnlabeled > 0) {
+              chain = phenotype + " " + configuration.numUnlabeled + " " + fold;
+            }
+            if(! tasks.containsKey(chain)) {
+              tasks.put(chain, new CellTask(datasets.get(phenotype), evaluations.get(phenotype)));
+            }
+            tasks.get(chain).add(cell, configuration, fold, splits.get(phenotype)[fold]);
+            numCells++;
+          }
+        }
+      }
+    }
+
+    System.out.format("%d cells done, %d cells to run\n", results.size(), numCells);
+    numToRun = numCells;
+    if(numCells > 0) {
+      writer = openForAppend(resultFile);
+      ExecutorService executor = Parallel.newPool(threads);
+      try {
+        Parallel.invokeAll(executor, new ArrayList<CellTask>(tasks.values()));
+      } finally {
+        executor.shutdown();
+        writer.close();
+      }
+    }
+
+    for(EvaluatePhenotype evaluation : evaluations.values()) {
+      System.out.println(evaluation.phenotype + ": " + evaluation.getStatistics().report());
+    }
+    for(String phenotype : Constants.phenotypes) {
+      writeOutput(phenotype);
+    }
+  }
+
+  /**
+   * Evaluate cells one after another. A cell is one fold of one configuration.
+   */
+  private class CellTask implements Callable<Void> {
+
+    private I2b2Dataset dataset;
+    private EvaluatePhenotype evaluation;
+    private List<String> cells = new ArrayList<String>();
+    private List<Configuration> configurations = new ArrayList<Configuration>();
+    private List<Integer> folds = new ArrayList<Integer>();
+    private List<Split> splits = new ArrayList<Split>();
+
+    public CellTask(I2b2Dataset dataset, EvaluatePhenotype evaluation) {
+      this.dataset = dataset;
+      this.evaluation = evaluation;
+    }
+
+    public void add(String cell, Configuration configuration, int fold, Split split) {
+      cells.add(cell);
+      configurations.add(configuration);
+      folds.add(fold);
+      splits.add(split);
+    }
+
+    public Void call() {
+
+      for(int i = 0; i < cells.size(); i++) {
+        try {
+          double accuracy = evaluate(configurations.get(i), folds.get(i), splits.get(i));
+          record(cells.get(i), accuracy);
+        } catch (Exception e) {
+          // the cell is not recorded, so it will run again when the run is restarted
+          System.err.println("cell " + cells.get(i) + " failed: " + e);
+          e.printStackTrace();
+        }
+      }
+
+      return null;
+    }
+
+    private double evaluate(Configuration configuration, int fold, Split split) throws IOException {
+
+      // fresh views of the fold since the pool set is consumed by sampling
+      Split views = new Split(dataset, split.getPoolRows(), split.getTestRows());
+      if(configuration.numUnlabeled == 0) {
+        return Evaluation.evaluateBaselineFold(dataset, views, configuration.numLabeled);
+      }
+      I2b2Dataset unlabeled = DatasetRegistry.getUnlabeled(
+          configuration.dataPath,
+          configuration.labelPath,
+          configuration.numUnlabeled);
+      return evaluation.evaluateFold(dataset, unlabeled, views, fold, configuration);
+    }
+  }
+
+  /**
+   * Append the result of a cell to the result file.
+   */
+  private synchronized void record(String cell, double accuracy) throws IOException {
+
+    writer.write(cell + " " + accuracy + "\n");
+    writer.flush();
+    results.put(cell, accuracy);
+    numCompleted++;
+    System.out.format("%-20s %.4f (%d/%d)\n", cell, accuracy, numCompleted, numToRun);
+  }
+
+  /**
+   * Write the output file of a phenotype. A line per labeled size contains
+   * the mean accuracy and the standard error of each configuration.
+   * Configurations with missing cells are averaged over the completed folds.
+   */
+  private void writeOutput(String phenotype) throws IOException {
+
+    StringBuilder output = new StringBuilder();
+    for(int labeled = Constants.step; labeled < Constants.maxLabeled; labeled += Constants.step) {
+      output.append(String.format("%-3d ", labeled));
+      for(Configuration configuration : Configuration.createConfigurations(phenotype, labeled)) {
+        List<Double> completed = new ArrayList<Double>();
+        for(int fold = 0; fold < Constants.folds; fold++) {
+          Double accuracy = results.get(getCell(phenotype, configuration, fold));
+          if(accuracy != null) {
+            completed.add(accuracy);
+          }
+        }
+        if(completed.size() < Constants.folds) {
+          System.err.format("%s %d %d: %d of %d folds done\n", phenotype,
+              configuration.numLabeled, configuration.numUnlabeled, completed.size(), Constants.folds);
+        }
+        double[] foldAccuracy = new double[completed.size()];
+        for(int fold = 0; fold < foldAccuracy.length; fold++) {
+          foldAccuracy[fold] = completed.get(fold);
+        }
+        double accuracy = StatUtils.mean(foldAccuracy);
+        double stdErr = Math.sqrt(StatUtils.variance(foldAccuracy)) / Math.sqrt(foldAccuracy.length);
+        output.append(String.format("%.4f %.4f ", accuracy, stdErr));
+      }
+      output.append("\n");
+    }
+
+    Files.write(output, new File(Constants.outputDir + phenotype + ".txt"), Charsets.UTF_8);
+  }
+
+  private static String getCell(String phenotype, Configuration configuration, int fold) {
+    return phenotype + " " + configuration.numLabeled + " " + configuration.numUnlabeled + " " + fold;
+  }
+
+  /**
+   * Read the cells in a result file. A line counts only if it is complete:
+   * the last line of a run that was killed may be cut anywhere (even in the
+   * middle of a number), so an unterminated last line is skipped.
+   */
+  public static Map<String, Double> readResults(String resultFile) throws IOException {
+
+    Map<String, Double> results = new LinkedHashMap<String, Double>();
+    File file = new File(resultFile);
+    if(! file.exists()) {
+      return results;
+    }
+
+    String text = Files.toString(file, Charsets.UTF_8);
+    String[] lines = text.substring(0, text.lastIndexOf('\n') + 1).split("\n");
+    for(String line : lines) {
+      String[] elements = line.trim().split(" ");
+      if(elements.length != 5) {
+        continue;
+      }
+      try {
+        double accuracy = Double.parseDouble(elements[4]);
+        results.put(elements[0] + " " + elements[1] + " " + elements[2] + " " + elements[3], accuracy);
+      } catch (NumberFormatException e) {
+        continue;
+      }
+    }
+
+    return results;
+  }
+
+  /**
+   * Open a file for appending. If the previous run was killed in the middle
+   * of a line, the incomplete line is removed first.
+   */
+  private static Writer openForAppend(String resultFile) throws IOException {
+
+    File file = new File(resultFile);
+    if(file.length() > 0) {
+      RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+      try {
+        long length = randomAccessFile.length();
+        while(length > 0) {
+          randomAccessFile.seek(length - 1);
+          if(randomAccessFile.read() == '\n') {
+            break;
+          }
+          length--;
+        }
+        randomAccessFile.setLength(length);
+      } finally {
+        randomAccessFile.close();
+      }
+    }
+
+    return new OutputStreamWriter(new FileOutputStream(file, true), Charsets.UTF_8);
+  }
+
+  public static void main(String[] args) throws IOException {
+
+    if(args.length < 1) {
+      System.err.println("Please specify location of properties file");
+      return;
+    }
+    Constants.populate(args[0], true);
+
+    Scheduler scheduler = new Scheduler(Constants.resultFile, Constants.schedulerThreads);
+    scheduler.run();
+  }
+}
@@ -0,0 +1,82 @@
+package utils;
+
+/**
+ * Numerically stable operations on base 10 log probabilities. 
+ * 
+ * Unnormalized log probabilities are often very small (e.g. -802.345),
+ * so 10^x underflows. Factoring out the largest value avoids this:
+ * 
+ * log(10^x_0 + ... + 10^x_n-1) = m + log(10^(x_0 - m) + ... + 10^(x_n-1 - m))
+ *   where m = max(x_0, ..., x_n-1)
+ * 
+ * None of these methods allocate memory except for logToProb().
+ */
+public class LogMath {
+
+	/**
+	 * Calculate log10(10^x_0 + ... + 10^x_n-1).
+	 */
+	public static double logSumExp(double[] logValues) {
+		
+		double max = max(logValues);
+		if(max == Double.NEGATIVE_INFINITY) {
+			return max;
+		}
+		
+		double sum = 0;
+		for(int i = 0; i < logValues.length; i++) {
+			sum += Math.pow(10, logValues[i] - max);
+		}
+		
+		return max + Math.log10(sum);
+	}
+	
+	/**
+	 * Convert unnormalized log10 probabilities to probabilities. The result is
+	 * written into probs, which can be the same array as logValues. 
+	 * Return the log of the normalization constant, i.e. logSumExp(logValues).
+	 */
+	public static double normalize(double[] logValues, double[] probs) {
+		
+		double max = max(logValues);
+		if(max == Double.NEGATIVE_INFINITY) {
+			// all values are zero; fall back to a uniform distribution
+			for(int i = 0; i < logValues.length; i++) {
+				probs[i] = 1.0 / logValues.length;
+			}
+			return max;
+		}
+		
+		double sum = 0;
+		for(int i = 0; i < logValues.length; i++) {
+			probs[i] = Math.pow(10, logValues[i] - max);
+			sum += probs[i];
+		}
+		for(int i = 0; i < logValues.length; i++) {
+			probs[i] = probs[i] / sum;
+		}
+		
+		return max + Math.log10(sum);
+	}
+	
+	/**
+	 * Convert unnormalized log10 probabilities to probabilities.
+	 */
+	public static double[] logToProb(double[] logValues) {
+		
+		double[] probs = new double[logValues.length];
+		normalize(logValues, probs);
+		return probs;
+	}
+	
+	private static double max(double[] values) {
+		
+		double max = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < values.length; i++) {
+			if(values[i] > max) {
+				max = values[i];
+			}
+		}
+		return max;
+	}
+}
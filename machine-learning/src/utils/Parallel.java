@@ -0,0 +1,73 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Helpers for running tasks on a thread pool.
+ */
+public class Parallel {
+
+	/**
+	 * Create a fixed size thread pool. Its threads are daemon threads,
+	 * so a pool that was not shut down does not keep the JVM alive.
+	 */
+	public static ExecutorService newPool(int threads) {
+		
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Run the tasks and wait for all of them to finish. Return the results 
+	 * in the order of the tasks. If a task fails, its exception is rethrown.
+	 */
+	public static <T> List<T> invokeAll(ExecutorService executor, List<? extends Callable<T>> tasks) {
+		
+		List<T> results = new ArrayList<T>();
+		try {
+			for(Future<T> future : executor.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if(e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		
+		return results;
+	}
+	
+	/**
+	 * Split [0, n) into at most numParts contiguous ranges of nearly equal size. 
+	 * Range i is [boundaries[i], boundaries[i + 1]).
+	 */
+	public static int[] ranges(int n, int numParts) {
+		
+		int parts = Math.max(1, Math.min(numParts, n));
+		int[] boundaries = new int[parts + 1];
+		for(int part = 0; part <= parts; part++) {
+			boundaries[part] = (int) ((long) n * part / parts);
+		}
+		
+		return boundaries;
+	}
+}
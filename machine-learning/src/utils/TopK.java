@@ -0,0 +1,114 @@
+package utils;
+
+/**
+ * Keep the k largest scores seen so far together with their indices.
+ * The scores are stored in a bounded min-heap of primitives, so adding
+ * n scores takes O(n log k) time and O(k) memory. Ties are broken in
+ * favor of the smaller index. NaN scores are ignored.
+ */
+public class TopK {
+
+	private int k;
+	private int size;
+	private double[] scores;
+	private int[] indices;
+
+	public TopK(int k) {
+
+		this.k = k;
+		scores = new double[k];
+		indices = new int[k];
+	}
+
+	/**
+	 * Offer a score. It is kept if the heap is not full or if it is
+	 * better than the worst score in the heap.
+	 */
+	public void add(int index, double score) {
+
+		if(Double.isNaN(score) || k == 0) {
+			return;
+		}
+		if(size < k) {
+			scores[size] = score;
+			indices[size] = index;
+			siftUp(size++);
+		} else if(worse(0, score, index)) {
+			scores[0] = score;
+			indices[0] = index;
+			siftDown(0);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Return the indices in the order of decreasing score (increasing index
+	 * for equal scores). The heap is empty afterwards.
+	 */
+	public int[] toSortedIndices() {
+
+		int[] sorted = new int[size];
+		for(int position = size - 1; position >= 0; position--) {
+			sorted[position] = indices[0];
+			size--;
+			scores[0] = scores[size];
+			indices[0] = indices[size];
+			siftDown(0);
+		}
+
+		return sorted;
+	}
+
+	/**
+	 * True if the entry at the given heap position ranks below (score, index).
+	 */
+	private boolean worse(int position, double score, int index) {
+
+		if(scores[position] != score) {
+			return scores[position] < score;
+		}
+		return indices[position] > index;
+	}
+
+	private void siftUp(int position) {
+
+		while(position > 0) {
+			int parent = (position - 1) / 2;
+			if(! worse(position, scores[parent], indices[parent])) {
+				break;
+			}
+			swap(position, parent);
+			position = parent;
+		}
+	}
+
+	private void siftDown(int position) {
+
+		while(true) {
+			int worst = position;
+			for(int child = 2 * position + 1; child <= 2 * position + 2 && child < size; child++) {
+				if(worse(child, scores[worst], indices[worst])) {
+					worst = child;
+				}
+			}
+			if(worst == position) {
+				break;
+			}
+			swap(position, worst);
+			position = worst;
+		}
+	}
+
+	private void swap(int a, int b) {
+
+		double score = scores[a];
+		scores[a] = scores[b];
+		scores[b] = score;
+		int index = indices[a];
+		indices[a] = indices[b];
+		indices[b] = index;
+	}
+}
@@ -0,0 +1,98 @@
+package utils.test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import utils.LogMath;
+
+/**
+ * Compare log-sum-exp normalization against the big decimal
+ * implementation that EmModel and gibbs.Model used to have.
+ */
+public class TestLogMath {
+
+	public static final int TRIALS = 100000;
+	public static final double TOLERANCE = 1e-9;
+	
+	public static void main(String[] args) {
+		
+		Random random = new Random(100);
+		double maxProbDifference = 0;
+		double maxLogSumDifference = 0;
+		
+		for(int trial = 0; trial < TRIALS; trial++) {
+			// unnormalized log probabilities similar to the ones naive bayes produces
+			int numClasses = 2 + random.nextInt(4);
+			double scale = random.nextBoolean() ? 10 : 1000;
+			double[] logProbs = new double[numClasses];
+			for(int label = 0; label < numClasses; label++) {
+				logProbs[label] = -Math.abs(random.nextDouble() * 3000 + random.nextGaussian() * scale);
+			}
+			
+			double[] expected = logToProbBigDecimal(logProbs);
+			double[] actual = LogMath.logToProb(logProbs);
+			for(int label = 0; label < numClasses; label++) {
+				maxProbDifference = Math.max(maxProbDifference, Math.abs(expected[label] - actual[label]));
+			}
+			
+			double expectedLogSum = logSumBigDecimal(logProbs);
+			double actualLogSum = LogMath.logSumExp(logProbs);
+			maxLogSumDifference = Math.max(maxLogSumDifference, Math.abs(expectedLogSum - actualLogSum));
+		}
+		
+		System.out.format("max probability difference: %e\n", maxProbDifference);
+		System.out.format("max log-sum difference: %e\n", maxLogSumDifference);
+		System.out.println(maxProbDifference < TOLERANCE && maxLogSumDifference < TOLERANCE ? "passed" : "failed");
+	}
+	
+	/**
+	 * Reference normalization using big decimals.
+	 */
+	public static double[] logToProbBigDecimal(double[] unnormalizedClassLogProbs) {
+		
+		double[] probs = new double[unnormalizedClassLogProbs.length];
+		BigDecimal normalizer = new BigDecimal(0);
+		for(int label = 0; label < unnormalizedClassLogProbs.length; label++) {
+			normalizer = normalizer.add(powerOfTen(unnormalizedClassLogProbs[label]));
+		}
+		for(int label = 0; label < unnormalizedClassLogProbs.length; label++) {
+			probs[label] = powerOfTen(unnormalizedClassLogProbs[label]).divide(normalizer, RoundingMode.HALF_UP).doubleValue();
+		}
+		return probs;
+	}
+	
+	/**
+	 * Reference log10 of the sum using big decimals. The log is 
+	 * calculated as log10(unscaled value) - scale.
+	 */
+	public static double logSumBigDecimal(double[] logValues) {
+		
+		BigDecimal sum = new BigDecimal(0);
+		for(double logValue : logValues) {
+			sum = sum.add(powerOfTen(logValue));
+		}
+		BigDecimal rounded = sum.round(new MathContext(17));
+		return Math.log10(rounded.unscaledValue().doubleValue()) - rounded.scale();
+	}
+	
+	/**
+	 * Calculate 10^exponent by splitting the exponent into its integer i 
+	 * and fractional f parts. I.e. 10^exponent = 10^(i + f) = 10^i * 10^f
+	 * 
+	 * Unlike the old helper, which used an unscaled value of 10 and thus 
+	 * returned 10^(i + 1) * 10^f, the unscaled value here is 1. This does not
+	 * change normalized probabilities but makes the log of the sum exact.
+	 */
+	private static BigDecimal powerOfTen(double exponent) {
+		
+		BigDecimal exponentAsBigDecimal = new BigDecimal(String.valueOf(exponent));
+		BigDecimal integerPart = new BigDecimal(exponentAsBigDecimal.intValue());
+		BigDecimal fractionalPart = exponentAsBigDecimal.subtract(integerPart);
+		BigDecimal tenToIntegerPart = new BigDecimal(BigInteger.ONE, -1 * integerPart.intValue());
+		BigDecimal tenToFractionalPart = new BigDecimal(Math.pow(10, fractionalPart.doubleValue()));
+		return tenToIntegerPart.multiply(tenToFractionalPart);
+	}
+}